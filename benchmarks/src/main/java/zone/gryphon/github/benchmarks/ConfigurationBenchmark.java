@@ -0,0 +1,73 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zone.gryphon.github.PermissionAutomationApplication;
+import zone.gryphon.github.configuration.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and validating the configuration file, compared to loading it from the configuration cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmarks.xml")
+public class ConfigurationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int teams;
+
+    private File file;
+
+    private File cache;
+
+    @Setup
+    public void setup() throws IOException {
+        file = new SyntheticOrganization("benchmark", 0, teams, 10).writeConfiguration();
+
+        cache = File.createTempFile("configuration-", ".cache");
+        cache.deleteOnExit();
+        PermissionAutomationApplication.loadConfiguration(file, cache);
+    }
+
+    @Benchmark
+    public Configuration readConfiguration() throws IOException {
+        return PermissionAutomationApplication.readConfiguration(file);
+    }
+
+    @Benchmark
+    public Configuration loadCachedConfiguration() throws IOException {
+        return PermissionAutomationApplication.loadConfiguration(file, cache);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import zone.gryphon.github.PermissionAutomationApplication;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full runs of the application, loading state from and applying changes to a {@link FakeGitHub}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmarks.xml")
+public class EndToEndBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int repositories;
+
+    @Param({"10"})
+    private int teams;
+
+    @Param({"100"})
+    private int pageSize;
+
+    @Param({"0"})
+    private int latencyMillis;
+
+    @Param({"REST"})
+    private String stateLoader;
+
+    @Param({"4"})
+    private int pagesPerListing;
+
+    @Param({"OKHTTP"})
+    private String connector;
+
+    private FakeGitHub github;
+
+    private File configuration;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticOrganization organization = new SyntheticOrganization("benchmark", repositories, teams, 10);
+        github = new FakeGitHub(organization, pageSize, Duration.ofMillis(latencyMillis));
+        configuration = organization.writeConfiguration();
+    }
+
+    @TearDown
+    public void tearDown() {
+        github.close();
+    }
+
+    @Benchmark
+    public void run() throws Exception {
+        new PermissionAutomationApplication(
+            "--github", github.getUrl(),
+            "--token", "benchmark",
+            "--file", configuration.getAbsolutePath(),
+            "--state-loader", stateLoader,
+            "--pages-per-listing", Integer.toString(pagesPerListing),
+            "--connector", connector,
+            "--write-interval", "0",
+            "--rate-limit-reserve", "0"
+        ).run();
+    }
+
+}
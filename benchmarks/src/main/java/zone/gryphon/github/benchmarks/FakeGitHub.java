@@ -0,0 +1,545 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import zone.gryphon.github.model.RepositoryPermission;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * In-process fake of the subset of the Github REST API used by the application, serving one or more
+ * {@link SyntheticOrganization}s.
+ * <p>
+ * Listings are paginated with {@code Link} headers exactly like Github, with the page size capped at a configurable
+ * maximum. Responses carry ETags, and conditional requests for unchanged responses are answered with
+ * "304 Not Modified". Every request can be delayed by a fixed latency. Mutating requests are recorded, and are
+ * reflected by the endpoints which return a single team membership or team repository permission, but do not change
+ * any listing, so every run against the same server does the same amount of work.
+ */
+@Slf4j
+public class FakeGitHub implements AutoCloseable {
+
+    private static final String CREATED_AT = "2019-01-01T00:00:00Z";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Team IDs are unique across the server; the teams of the n-th organization start from n times this
+     */
+    private static final int TEAM_ID_STRIDE = 1_000_000;
+
+    static {
+        // without this, small responses on kept-alive connections wait for a delayed ACK, adding ~40ms to every request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final List<SyntheticOrganization> organizations;
+
+    private final int maxPageSize;
+
+    private final long latencyMillis;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-github");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong listings = new AtomicLong();
+
+    private final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Paths whose mutating requests are rejected
+     */
+    private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Map of path -&gt; body of the last mutating request to it, or empty if it was a deletion
+     */
+    private final Map<String, Optional<JsonNode>> written = new ConcurrentHashMap<>();
+
+    private final String url;
+
+    /**
+     * @param organization The organization to serve
+     * @param maxPageSize  Largest page size which is honored for listings
+     * @param latency      Delay added to every request
+     * @throws IOException If the server could not be started
+     */
+    public FakeGitHub(@NonNull SyntheticOrganization organization, int maxPageSize, @NonNull Duration latency) throws IOException {
+        this(Collections.singletonList(organization), maxPageSize, latency);
+    }
+
+    /**
+     * @param organizations The organizations to serve, which must have distinct names
+     * @param maxPageSize   Largest page size which is honored for listings
+     * @param latency       Delay added to every request
+     * @throws IOException If the server could not be started
+     */
+    public FakeGitHub(@NonNull List<SyntheticOrganization> organizations, int maxPageSize, @NonNull Duration latency) throws IOException {
+        this.organizations = new ArrayList<>(organizations);
+        this.maxPageSize = maxPageSize;
+        this.latencyMillis = latency.toMillis();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+        this.url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return Base URL of the API, to be passed to the application with {@code --github}
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return Number of requests served so far
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return Number of pages of listings served so far
+     */
+    public long getListings() {
+        return listings.get();
+    }
+
+    /**
+     * @return Every mutating request served so far, as "METHOD /path"
+     */
+    public List<String> getWrites() {
+        synchronized (writes) {
+            return new ArrayList<>(writes);
+        }
+    }
+
+    /**
+     * Reject every later mutating request to a path, with a 422 response which is not retried.
+     *
+     * @param path The path, as "/teams/1/repos/org/repository"
+     */
+    public void reject(@NonNull String path) {
+        rejected.add(normalize(path));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+
+            for (int read; (read = in.read(buffer)) >= 0; ) {
+                body.write(buffer, 0, read);
+            }
+
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+
+            exchange.getResponseHeaders().add("X-RateLimit-Limit", "5000");
+            exchange.getResponseHeaders().add("X-RateLimit-Remaining", "5000");
+            exchange.getResponseHeaders().add("X-RateLimit-Reset", Long.toString(System.currentTimeMillis() / 1000 + 3600));
+
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                String path = exchange.getRequestURI().getPath();
+
+                if (rejected.contains(normalize(path))) {
+                    send(exchange, 422, MAPPER.createObjectNode().put("message", "Validation Failed"));
+                    return;
+                }
+
+                writes.add(exchange.getRequestMethod() + " " + path);
+                written.put(normalize(path), "DELETE".equals(exchange.getRequestMethod()) ? Optional.empty() : Optional.of(body.size() == 0 ? MAPPER.createObjectNode() : MAPPER.readTree(body.toByteArray())));
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+
+            route(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } catch (RuntimeException e) {
+            log.error("Failed to handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        String[] path = uri.getPath().substring(1).split("/");
+        Map<String, String> query = query(uri);
+
+        SyntheticOrganization organization = path.length >= 2 && (path[0].equals("orgs") || path[0].equals("repos")) ? organization(path[1]) : null;
+
+        if (organization != null && path[0].equals("orgs")) {
+            if (path.length == 2) {
+                send(exchange, organization(organization));
+                return;
+            }
+
+            if (path.length == 3 && path[2].equals("repos")) {
+                page(exchange, query, organization.getRepositories(), repository -> repository(organization, repository));
+                return;
+            }
+
+            if (path.length == 3 && path[2].equals("teams")) {
+                page(exchange, query, organization.getTeams(), team -> team(organization, team));
+                return;
+            }
+
+            if (path.length == 4 && path[2].equals("teams")) {
+                int team = index(path[3], "team-");
+
+                if (team >= 0 && team < organization.getTeams()) {
+                    send(exchange, team(organization, team));
+                    return;
+                }
+            }
+        }
+
+        if (organization != null && path.length == 3 && path[0].equals("repos")) {
+            int repository = index(path[2], "repository-");
+
+            if (repository >= 0 && repository < organization.getRepositories()) {
+                send(exchange, repository(organization, repository));
+                return;
+            }
+        }
+
+        int id = path.length >= 3 && path[0].equals("teams") ? index(path[1], "") - 1 : -1;
+        SyntheticOrganization owner = id < 0 || id / TEAM_ID_STRIDE >= organizations.size() ? null : organizations.get(id / TEAM_ID_STRIDE);
+        int team = id % TEAM_ID_STRIDE;
+
+        if (owner != null && team < owner.getTeams()) {
+            if (path.length == 4 && path[2].equals("memberships")) {
+                ObjectNode membership = membership(owner, team, path[3], uri.getPath());
+
+                if (membership != null) {
+                    send(exchange, membership);
+                    return;
+                }
+            }
+
+            if (path.length == 5 && path[2].equals("repos") && path[3].equals(owner.getName())) {
+                ObjectNode repository = teamRepository(owner, team, index(path[4], "repository-"), uri.getPath());
+
+                if (repository != null) {
+                    send(exchange, repository);
+                    return;
+                }
+            }
+
+            if (path.length == 3 && path[2].equals("members")) {
+                boolean maintainers = "maintainer".equals(query.get("role"));
+                int count = maintainers ? 1 : owner.getMembers();
+                page(exchange, query, count, user -> user(owner, user));
+                return;
+            }
+
+            if (path.length == 3 && path[2].equals("repos")) {
+                page(exchange, query, owner.getRepositories(), repository -> teamRepository(owner, team, repository));
+                return;
+            }
+        }
+
+        if (path.length == 1 && path[0].equals("user")) {
+            ObjectNode node = user(organizations.get(0), 0);
+            node.put("login", "benchmark");
+            node.put("created_at", CREATED_AT);
+            send(exchange, node);
+            return;
+        }
+
+        if (path.length == 2 && path[0].equals("users")) {
+            int user = index(path[1], "user-");
+
+            if (user >= 0) {
+                ObjectNode node = user(organizations.get(0), user);
+                node.put("name", "User " + user);
+                node.put("created_at", CREATED_AT);
+                send(exchange, node);
+                return;
+            }
+        }
+
+        ObjectNode error = MAPPER.createObjectNode();
+        error.put("message", "Not Found");
+        send(exchange, 404, error);
+    }
+
+    private void page(HttpExchange exchange, Map<String, String> query, int count, IntFunction<ObjectNode> item) throws IOException {
+        listings.incrementAndGet();
+
+        int size = Math.min(maxPageSize, Integer.parseInt(query.getOrDefault("per_page", "30")));
+        int page = Integer.parseInt(query.getOrDefault("page", "1"));
+        int last = Math.max(1, (count + size - 1) / size);
+
+        ArrayNode out = MAPPER.createArrayNode();
+
+        for (int i = (page - 1) * size; i < Math.min(count, page * size); i++) {
+            ObjectNode node = item.apply(i);
+
+            if (node != null) {
+                out.add(node);
+            }
+        }
+
+        if (page < last) {
+            String base = url + exchange.getRequestURI().getPath() + "?" + (query.containsKey("role") ? "role=" + query.get("role") + "&" : "") + "per_page=" + size + "&page=";
+            exchange.getResponseHeaders().add("Link", String.format("<%s%d>; rel=\"next\", <%s%d>; rel=\"last\"", base, page + 1, base, last));
+        }
+
+        send(exchange, out);
+    }
+
+    private SyntheticOrganization organization(String name) {
+        return organizations.stream().filter(organization -> organization.getName().equals(name)).findFirst().orElse(null);
+    }
+
+    private ObjectNode organization(SyntheticOrganization organization) {
+        ObjectNode out = MAPPER.createObjectNode();
+        out.put("login", organization.getName());
+        out.put("id", organizations.indexOf(organization) + 1);
+        out.put("url", url + "/orgs/" + organization.getName());
+        out.put("type", "Organization");
+        out.put("created_at", CREATED_AT);
+        return out;
+    }
+
+    private ObjectNode team(SyntheticOrganization organization, int team) {
+        int id = organizations.indexOf(organization) * TEAM_ID_STRIDE + team + 1;
+
+        ObjectNode out = MAPPER.createObjectNode();
+        out.put("id", id);
+        out.put("name", organization.team(team));
+        out.put("slug", organization.team(team));
+        out.put("permission", "pull");
+        out.put("url", url + "/teams/" + id);
+        return out;
+    }
+
+    private ObjectNode user(SyntheticOrganization organization, int user) {
+        ObjectNode out = MAPPER.createObjectNode();
+        out.put("login", organization.user(user));
+        out.put("id", user + 1);
+        out.put("url", url + "/users/" + organization.user(user));
+        out.put("type", "User");
+        return out;
+    }
+
+    private ObjectNode repository(SyntheticOrganization organization, int repository) {
+        String name = organization.repository(repository);
+
+        ObjectNode owner = MAPPER.createObjectNode();
+        owner.put("login", organization.getName());
+        owner.put("id", organizations.indexOf(organization) + 1);
+        owner.put("type", "Organization");
+
+        ObjectNode out = MAPPER.createObjectNode();
+        out.put("id", (long) organizations.indexOf(organization) * TEAM_ID_STRIDE + repository + 1);
+        out.put("name", name);
+        out.put("full_name", organization.getName() + "/" + name);
+        out.put("url", url + "/repos/" + organization.getName() + "/" + name);
+        out.put("private", false);
+        out.put("archived", false);
+        out.put("visibility", "public");
+        organization.topics(repository).forEach(out.putArray("topics")::add);
+        out.set("owner", owner);
+        return out;
+    }
+
+    private ObjectNode teamRepository(SyntheticOrganization organization, int team, int repository) {
+        RepositoryPermission permission = organization.permission(team, repository);
+
+        if (permission == RepositoryPermission.NONE) {
+            return null;
+        }
+
+        ObjectNode permissions = MAPPER.createObjectNode();
+        permissions.put("admin", permission == RepositoryPermission.ADMIN);
+        permissions.put("push", permission.compareTo(RepositoryPermission.WRITE) >= 0);
+        permissions.put("pull", true);
+
+        ObjectNode out = repository(organization, repository);
+        out.set("permissions", permissions);
+        return out;
+    }
+
+    /**
+     * @return The membership of the user on the team, taking writes into account, or null if the user isn't a member
+     */
+    private ObjectNode membership(SyntheticOrganization organization, int team, String login, String path) {
+        Optional<JsonNode> write = written.get(normalize(path));
+        String role;
+
+        if (write != null) {
+            role = write.map(body -> body.path("role").asText("member")).orElse(null);
+        } else {
+            int user = index(login, "user-");
+            boolean member = user >= 0 && user < organization.getMembers();
+            role = !member ? null : user == 0 ? "maintainer" : "member";
+        }
+
+        if (role == null) {
+            return null;
+        }
+
+        ObjectNode out = MAPPER.createObjectNode();
+        out.put("role", role);
+        out.put("state", "active");
+        return out;
+    }
+
+    /**
+     * @return The team's permission over the repository, taking writes into account, or null if it has none
+     */
+    private ObjectNode teamRepository(SyntheticOrganization organization, int team, int repository, String path) {
+        if (repository < 0 || repository >= organization.getRepositories()) {
+            return null;
+        }
+
+        Optional<JsonNode> write = written.get(normalize(path));
+
+        if (write == null) {
+            return teamRepository(organization, team, repository);
+        }
+
+        if (!write.isPresent()) {
+            return null;
+        }
+
+        String permission = write.get().path("permission").asText("pull");
+
+        ObjectNode permissions = MAPPER.createObjectNode();
+        permissions.put("admin", permission.equals("admin"));
+        permissions.put("push", !permission.equals("pull"));
+        permissions.put("pull", true);
+
+        ObjectNode out = repository(organization, repository);
+        out.set("permissions", permissions);
+        return out;
+    }
+
+    /**
+     * Members are added through "/teams/:id/memberships/:login" but removed through "/teams/:id/members/:login"
+     */
+    private static String normalize(String path) {
+        return path.replaceFirst("^(/teams/[^/]+)/members/", "$1/memberships/");
+    }
+
+    private void send(HttpExchange exchange, Object body) throws IOException {
+        send(exchange, 200, body);
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        String etag = String.format("\"%08x\"", Arrays.hashCode(bytes));
+
+        // like Github, answer conditional requests for unchanged responses with "304 Not Modified"
+        if (status == 200 && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().add("Cache-Control", "private, max-age=60, s-maxage=60");
+        exchange.getResponseHeaders().add("ETag", etag);
+        exchange.sendResponseHeaders(status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static int index(String value, String prefix) {
+        if (!value.startsWith(prefix)) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(value.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> out = new HashMap<>();
+
+        if (uri.getRawQuery() == null) {
+            return out;
+        }
+
+        for (String parameter : uri.getRawQuery().split("&")) {
+            int separator = parameter.indexOf('=');
+
+            if (separator > 0) {
+                out.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+            }
+        }
+
+        return out;
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.benchmarks;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.kohsuke.github.HttpConnector;
+import zone.gryphon.github.PermissionAutomationApplication;
+import zone.gryphon.github.apply.ApplyEngine;
+import zone.gryphon.github.apply.Journal;
+import zone.gryphon.github.apply.Operation;
+import zone.gryphon.github.cache.CacheStatistics;
+import zone.gryphon.github.cache.CachingOrganization;
+import zone.gryphon.github.cache.OrganizationRegistry;
+import zone.gryphon.github.configuration.Configuration;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.http.RestClient;
+import zone.gryphon.github.incremental.ConfigurationHashes;
+import zone.gryphon.github.model.TeamRole;
+import zone.gryphon.github.planning.Plan;
+import zone.gryphon.github.planning.Planner;
+import zone.gryphon.github.planning.TeamPlan;
+import zone.gryphon.github.snapshot.OrganizationSnapshot;
+import zone.gryphon.github.snapshot.SnapshotStateLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Resumes a run which crashed while applying its plan, against a {@link FakeGitHub}, and checks that it picks up where
+ * it left off.
+ * <p>
+ * The journal of the crashed run records the first few operations as made, two operations as started but not
+ * finished, and ends with a partially written record. Only one of the two started operations actually reached the
+ * server. Resuming must make every operation which was neither recorded as made nor found to have taken effect,
+ * exactly once, without listing anything.
+ * <p>
+ * The crash is then resumed again with the server rejecting the operation which never reached it. The run must fail,
+ * and leave a journal behind in which that operation is still outstanding.
+ * <p>
+ * Exits with an error if any of that does not hold.
+ */
+@Slf4j
+public class JournalResumeCheck {
+
+    private static final String ORGANIZATION = "benchmark";
+
+    /**
+     * Number of operations the crashed run recorded as made
+     */
+    private static final int SUCCEEDED = 4;
+
+    public static void main(String[] args) throws Exception {
+        resume(false);
+        resume(true);
+    }
+
+    /**
+     * @param failing Whether the server rejects the started operation which never reached it
+     */
+    private static void resume(boolean failing) throws Exception {
+        SyntheticOrganization organization = new SyntheticOrganization(ORGANIZATION, 200, 5, 10);
+        File configurationFile = organization.writeConfiguration();
+        Configuration configuration = PermissionAutomationApplication.loadConfiguration(configurationFile, null);
+
+        // plan against the state the fake serves, as the crashed run did
+        OrganizationSnapshot snapshot = organization.toSnapshot();
+        OrganizationRegistry registry = new OrganizationRegistry(
+            new RequestScheduler(1, Duration.ZERO, 0),
+            (name, scheduler) -> new SnapshotStateLoader(name, snapshot),
+            new CacheStatistics());
+
+        Plan plan = new Planner(registry, Optional::of).plan(configuration);
+        List<Operation> operations = ApplyEngine.operations(plan);
+        Operation made = operations.get(SUCCEEDED);
+        Operation lost = operations.get(SUCCEEDED + 1);
+
+        check(operations.size() > SUCCEEDED + 2, "the plan has too few operations: %d", operations.size());
+        check(made.getKind() == Operation.Kind.ADD_MEMBER, "expected operation %d to add a member: %s", SUCCEEDED, made);
+        check(lost.getKind() == Operation.Kind.GRANT_REPOSITORY && lost.getTeam().equals(made.getTeam()),
+            "expected operation %d to grant team \"%s\" a repository: %s", SUCCEEDED + 1, made.getTeam(), lost);
+
+        File journalFile = File.createTempFile("journal-", ".jsonl");
+        journalFile.deleteOnExit();
+
+        try (Journal journal = Journal.start(journalFile, ConfigurationHashes.hash(configuration))) {
+            journal.plan(operations, slugs(registry.get(ORGANIZATION), plan));
+
+            for (int id = 0; id < SUCCEEDED; id++) {
+                journal.started(id);
+                journal.succeeded(id);
+            }
+
+            journal.started(SUCCEEDED);
+            journal.started(SUCCEEDED + 1);
+        }
+
+        // the process died while writing the next record
+        Files.write(journalFile.toPath(), "{\"type\":\"SUCC".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (FakeGitHub github = new FakeGitHub(organization, 100, Duration.ZERO)) {
+            RestClient client = new RestClient(github.getUrl(), "token benchmark", HttpConnector.DEFAULT);
+            long team = client.get(client.url(String.format("/orgs/%s/teams/%s", ORGANIZATION, registry.get(ORGANIZATION).getTeam(made.getTeam()).getSlug()))).getBody().path("id").asLong();
+
+            String madePath = String.format("/teams/%d/memberships/%s", team, made.getTarget());
+            String lostPath = String.format("/teams/%d/repos/%s/%s", team, ORGANIZATION, lost.getTarget());
+
+            // the first operation which was in flight reached the server before the crash, the second didn't
+            client.send("PUT", client.url(madePath), JsonNodeFactory.instance.objectNode().put("role", made.getRole() == TeamRole.MAINTAINER ? "maintainer" : "member"));
+
+            if (failing) {
+                github.reject(lostPath);
+            }
+
+            int writes = github.getWrites().size();
+            long listings = github.getListings();
+            boolean failed = false;
+
+            try {
+                new PermissionAutomationApplication(
+                    "--github", github.getUrl(),
+                    "--token", "benchmark",
+                    "--file", configurationFile.getAbsolutePath(),
+                    "--journal", journalFile.getAbsolutePath(),
+                    "--state-loader", "REST",
+                    "--write-interval", "0",
+                    "--rate-limit-reserve", "0"
+                ).run();
+            } catch (IllegalStateException e) {
+                failed = true;
+            }
+
+            List<String> resumed = github.getWrites().subList(writes, github.getWrites().size());
+
+            if (failing) {
+                check(failed, "run succeeded, although operation %s was rejected", lost);
+                check(!resumed.contains("PUT " + lostPath), "rejected operation was recorded as made: %s", lost);
+                check(journalFile.exists(), "journal was deleted, although operation %s failed", lost);
+                check(outstanding(journalFile, lost), "journal does not record operation %s as outstanding", lost);
+                log.info("Resumed the crashed run with a rejected operation, and kept the journal with it outstanding");
+                return;
+            }
+
+            int expected = operations.size() - SUCCEEDED - 1;
+
+            check(!failed, "run failed");
+            check(resumed.size() == expected, "expected %d writes when resuming, got %d: %s", expected, resumed.size(), resumed);
+            check(!resumed.contains("PUT " + madePath), "operation which had already taken effect was made again: %s", made);
+            check(resumed.contains("PUT " + lostPath), "operation which never reached the server was not made: %s", lost);
+            check(github.getListings() == listings, "expected no listings when resuming, got %d pages", github.getListings() - listings);
+            check(!journalFile.exists(), "journal was not deleted after resuming");
+        }
+
+        log.info("Resumed the crashed run: made {} of {} operations, skipped {} recorded as made and 1 found to have taken effect",
+            operations.size() - SUCCEEDED - 1, operations.size(), SUCCEEDED);
+    }
+
+    /**
+     * @return True if the journal plans the operation, and doesn't record it as made
+     */
+    private static boolean outstanding(File journalFile, Operation operation) throws IOException {
+        try (Journal journal = Journal.resume(journalFile).orElseThrow(() -> new IllegalStateException("No journal"))) {
+            List<Operation> planned = journal.getOperations();
+
+            for (int id = 0; id < planned.size(); id++) {
+                if (planned.get(id).equals(operation) && !journal.isSucceeded(id)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static Map<String, Map<String, String>> slugs(CachingOrganization organization, Plan plan) {
+        Map<String, String> out = new TreeMap<>();
+
+        for (TeamPlan team : plan.getTeams()) {
+            out.put(team.getTeam(), organization.getTeam(team.getTeam()).getSlug());
+        }
+
+        return Collections.singletonMap(organization.getLogin(), out);
+    }
+
+    private static void check(boolean condition, String format, Object... arguments) {
+        if (!condition) {
+            throw new IllegalStateException(String.format(format, arguments));
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import zone.gryphon.github.cache.CacheStatistics;
+import zone.gryphon.github.cache.CachingTeam;
+import zone.gryphon.github.cache.OrganizationRegistry;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.configuration.Configuration;
+import zone.gryphon.github.configuration.TeamConfiguration;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.planning.PermissionMatrix;
+import zone.gryphon.github.planning.Plan;
+import zone.gryphon.github.planning.Planner;
+import zone.gryphon.github.planning.SelectorIndex;
+import zone.gryphon.github.snapshot.OrganizationSnapshot;
+import zone.gryphon.github.snapshot.SnapshotStateLoader;
+import zone.gryphon.github.utilities.CollectionUtilities;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Planning against state which has already been loaded, so no requests are made.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmarks.xml")
+public class PlanningBenchmark {
+
+    private static final String ORGANIZATION = "benchmark";
+
+    @Param({"100", "1000", "10000"})
+    private int repositories;
+
+    @Param({"10"})
+    private int teams;
+
+    private Configuration configuration;
+
+    private OrganizationRegistry registry;
+
+    private PermissionMatrix matrix;
+
+    private SelectorIndex selectors;
+
+    private List<CachingTeam> loaded;
+
+    private List<TeamConfiguration> configurations;
+
+    @Setup
+    public void setup() {
+        SyntheticOrganization organization = new SyntheticOrganization(ORGANIZATION, repositories, teams, 10);
+        OrganizationSnapshot snapshot = organization.toSnapshot();
+
+        configuration = organization.toConfiguration();
+        registry = new OrganizationRegistry(
+            new RequestScheduler(1, Duration.ZERO, 0),
+            (name, scheduler) -> new SnapshotStateLoader(name, snapshot),
+            new CacheStatistics());
+
+        // sorted the same way as the matrix sorts names, so that the IDs of both agree, as the planner does
+        List<RepositoryInfo> sorted = new ArrayList<>(registry.get(ORGANIZATION).getRepositories().values());
+        sorted.sort(Comparator.comparing(RepositoryInfo::getName));
+
+        matrix = new PermissionMatrix(sorted.stream().map(RepositoryInfo::getName).collect(Collectors.toList()));
+        selectors = new SelectorIndex(sorted);
+        loaded = new ArrayList<>();
+        configurations = new ArrayList<>();
+
+        for (int i = 0; i < teams; i++) {
+            CachingTeam team = registry.get(ORGANIZATION).getTeam(organization.team(i));
+            team.load();
+            loaded.add(team);
+            configurations.add(configuration.getOrganizations().get(ORGANIZATION).getTeams().get(team.getName()));
+        }
+
+        calculatePermissions();
+    }
+
+    /**
+     * Apply the default permission, exclusions and overrides of every team.
+     * Selectors are matched once, during setup, so this measures only the matrix.
+     */
+    @Benchmark
+    public PermissionMatrix calculatePermissions() {
+        for (int i = 0; i < loaded.size(); i++) {
+            CachingTeam team = loaded.get(i);
+            TeamConfiguration configuration = configurations.get(i);
+            int id = matrix.team(team.getName());
+
+            matrix.applyDefault(id, configuration.getPermission());
+
+            for (String exclusion : CollectionUtilities.nullToEmpty(configuration.getExclusions())) {
+                matrix.exclude(id, selectors.matches(exclusion));
+            }
+
+            for (Map.Entry<String, RepositoryPermission> override : CollectionUtilities.nullToEmpty(configuration.getOverrides()).entrySet()) {
+                matrix.override(id, selectors.matches(override.getKey()), override.getValue());
+            }
+
+            matrix.setActual(id, team.getPermissions());
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Compare the calculated permissions of every team to their actual permissions.
+     */
+    @Benchmark
+    public void diff(Blackhole blackhole) {
+        for (CachingTeam team : loaded) {
+            blackhole.consume(matrix.diff(matrix.team(team.getName()), (repository, from, to) -> blackhole.consume(repository)));
+        }
+    }
+
+    /**
+     * Plan every configured team, including membership.
+     */
+    @Benchmark
+    public Plan plan() {
+        return new Planner(registry, Optional::of).plan(configuration);
+    }
+
+}
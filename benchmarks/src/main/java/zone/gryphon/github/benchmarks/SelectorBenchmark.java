@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.planning.SelectorIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching the repository selectors of every team in an organization, either all together in a single pass over the
+ * repositories, or one selector at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmarks.xml")
+public class SelectorBenchmark {
+
+    @Param({"4000"})
+    private int repositories;
+
+    @Param({"200"})
+    private int teams;
+
+    private List<RepositoryInfo> infos;
+
+    private List<List<String>> selectors;
+
+    @Setup
+    public void setup() {
+        SyntheticOrganization organization = new SyntheticOrganization("benchmark", repositories, teams, 1);
+
+        infos = new ArrayList<>(repositories);
+
+        for (int i = 0; i < repositories; i++) {
+            infos.add(organization.info(i));
+        }
+
+        selectors = new ArrayList<>(teams);
+
+        // a prefix, a glob, a regex and two attributes per team, most of them distinct
+        for (int team = 0; team < teams; team++) {
+            selectors.add(Arrays.asList(
+                String.format("repository-%03d*", team % 1000),
+                String.format("repository-*%d?", team % 10),
+                String.format("regex:repository-0+%d", team),
+                "topic:" + SyntheticOrganization.TOPIC,
+                "archived:false"));
+        }
+    }
+
+    /**
+     * Compile the selectors of every team into one index, and match them in a single pass.
+     */
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        SelectorIndex index = new SelectorIndex(infos);
+        selectors.forEach(index::register);
+
+        for (List<String> team : selectors) {
+            team.forEach(selector -> blackhole.consume(index.matches(selector)));
+        }
+    }
+
+    /**
+     * Match every selector of every team in a pass of its own.
+     */
+    @Benchmark
+    public void passPerSelector(Blackhole blackhole) {
+        for (List<String> team : selectors) {
+            team.forEach(selector -> blackhole.consume(new SelectorIndex(infos).matches(selector)));
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import zone.gryphon.github.snapshot.StateSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall clock time of a short run of the command line tool, planning a generated organization against a state snapshot,
+ * as a fresh process each time: on a plain JVM, on a JVM with the class data sharing archive recorded by the
+ * {@code appcds} profile, and as the executable built by the {@code native} profile.
+ * <p>
+ * The artifacts are expected in the {@code target} directory of the application, next to this module; their locations
+ * can be overridden with the {@code startup.jar}, {@code startup.archive} and {@code startup.executable} system
+ * properties. Launchers whose artifacts have not been built fail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmarks.xml")
+public class StartupBenchmark {
+
+    private static final String ORGANIZATION = "benchmark";
+
+    public enum Launcher {
+        JVM,
+        APPCDS,
+        NATIVE
+    }
+
+    @Param({"JVM", "APPCDS", "NATIVE"})
+    private Launcher launcher;
+
+    @Param({"100"})
+    private int teams;
+
+    private ProcessBuilder builder;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticOrganization organization = new SyntheticOrganization(ORGANIZATION, 100, teams, 10);
+
+        StateSnapshot snapshot = new StateSnapshot();
+        snapshot.setOrganizations(Collections.singletonMap(ORGANIZATION, organization.toSnapshot()));
+
+        File state = File.createTempFile("state-", ".bin");
+        state.deleteOnExit();
+        snapshot.write(state);
+
+        File output = File.createTempFile("startup-", ".log");
+        output.deleteOnExit();
+
+        List<String> command = new ArrayList<>(launcher());
+        command.addAll(Arrays.asList("--file", organization.writeConfiguration().getAbsolutePath(), "--state", state.getAbsolutePath(), "--plan"));
+
+        builder = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(output));
+    }
+
+    @Benchmark
+    public int run() throws IOException, InterruptedException {
+        int status = builder.start().waitFor();
+
+        if (status != 0) {
+            throw new IllegalStateException(String.format("%s launcher exited with status %d", launcher, status));
+        }
+
+        return status;
+    }
+
+    private List<String> launcher() {
+        File target = new File("..", "target");
+        File jar = artifact("startup.jar", new File(target, "github-permission-automation-1.0-SNAPSHOT.jar"), "mvn package");
+        String java = new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+
+        switch (launcher) {
+            case JVM:
+                return Arrays.asList(java, "-jar", jar.getAbsolutePath());
+            case APPCDS:
+                File archive = artifact("startup.archive", new File(target, "github-permission-automation.jsa"), "mvn package -Pappcds");
+                return Arrays.asList(java, "-XX:SharedArchiveFile=" + archive.getAbsolutePath(), "-jar", jar.getAbsolutePath());
+            case NATIVE:
+                return Collections.singletonList(artifact("startup.executable", new File(target, "github-permission-automation"), "mvn package -Pnative").getAbsolutePath());
+            default:
+                throw new IllegalStateException("Unknown launcher " + launcher);
+        }
+    }
+
+    private static File artifact(String property, File fallback, String build) {
+        File file = new File(System.getProperty(property, fallback.getPath()));
+
+        if (!file.isFile()) {
+            throw new IllegalStateException(String.format("\"%s\" does not exist; build it with `%s` in the application's directory, or set -D%s", file.getAbsolutePath(), build, property));
+        }
+
+        return file;
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.benchmarks;
+
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import lombok.Getter;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.cache.TeamState;
+import zone.gryphon.github.configuration.Configuration;
+import zone.gryphon.github.configuration.OrganizationConfiguration;
+import zone.gryphon.github.configuration.TeamConfiguration;
+import zone.gryphon.github.configuration.TeamMembershipConfiguration;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.RepositoryVisibility;
+import zone.gryphon.github.model.TeamRole;
+import zone.gryphon.github.snapshot.OrganizationSnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deterministically generated organization, along with a configuration which differs slightly from it.
+ * <p>
+ * Every team has read access to every repository, except for one in every {@value #DRIFT} repositories.
+ * The configuration gives every team read access to every repository, with one exclusion and one override,
+ * and adds one member to every team, so each run has a small number of changes to make.
+ */
+@Getter
+public class SyntheticOrganization {
+
+    /**
+     * One in this many repositories is missing from each team
+     */
+    public static final int DRIFT = 100;
+
+    /**
+     * Topic of one in every {@value #TOPIC_INTERVAL} repositories
+     */
+    public static final String TOPIC = "pci";
+
+    public static final int TOPIC_INTERVAL = 10;
+
+    private final String name;
+
+    private final int repositories;
+
+    private final int teams;
+
+    private final int members;
+
+    /**
+     * @param name         The login of the organization
+     * @param repositories Number of repositories in the organization
+     * @param teams        Number of teams in the organization
+     * @param members      Number of members of each team
+     */
+    public SyntheticOrganization(String name, int repositories, int teams, int members) {
+        this.name = name;
+        this.repositories = repositories;
+        this.teams = teams;
+        this.members = members;
+    }
+
+    public String repository(int repository) {
+        return String.format("repository-%05d", repository);
+    }
+
+    public Set<String> topics(int repository) {
+        return repository % TOPIC_INTERVAL == 0 ? Collections.singleton(TOPIC) : Collections.emptySet();
+    }
+
+    public RepositoryInfo info(int repository) {
+        return new RepositoryInfo(repository(repository), repository + 1, false, RepositoryVisibility.PUBLIC, topics(repository));
+    }
+
+    public String team(int team) {
+        return "team-" + team;
+    }
+
+    public String user(int user) {
+        return "user-" + user;
+    }
+
+    public RepositoryPermission permission(int team, int repository) {
+        return (repository + team) % DRIFT == 0 ? RepositoryPermission.NONE : RepositoryPermission.READ;
+    }
+
+    public TeamRole role(int user) {
+        if (user == 0) {
+            return TeamRole.MAINTAINER;
+        }
+
+        return user < members ? TeamRole.MEMBER : TeamRole.NONE;
+    }
+
+    public OrganizationSnapshot toSnapshot() {
+        Set<String> names = new LinkedHashSet<>();
+        List<RepositoryInfo> details = new ArrayList<>(repositories);
+
+        for (int i = 0; i < repositories; i++) {
+            names.add(repository(i));
+            details.add(info(i));
+        }
+
+        List<TeamState> states = new ArrayList<>();
+
+        for (int team = 0; team < teams; team++) {
+            Map<String, TeamRole> roles = new HashMap<>();
+
+            for (int user = 0; user < members; user++) {
+                roles.put(user(user), role(user));
+            }
+
+            Map<String, RepositoryPermission> permissions = new HashMap<>();
+
+            for (int repository = 0; repository < repositories; repository++) {
+                RepositoryPermission permission = permission(team, repository);
+
+                if (permission != RepositoryPermission.NONE) {
+                    permissions.put(repository(repository), permission);
+                }
+            }
+
+            states.add(new TeamState(team(team), team(team), roles, permissions));
+        }
+
+        OrganizationSnapshot out = new OrganizationSnapshot();
+        out.setRepositories(names);
+        out.setRepositoryDetails(details);
+        out.setTeams(states);
+        return out;
+    }
+
+    public Configuration toConfiguration() {
+        Map<String, TeamConfiguration> configurations = new LinkedHashMap<>();
+
+        for (int team = 0; team < teams; team++) {
+            Set<String> users = new LinkedHashSet<>();
+
+            // one more member than the team actually has
+            for (int user = 1; user <= members; user++) {
+                users.add(user(user));
+            }
+
+            TeamMembershipConfiguration membership = new TeamMembershipConfiguration();
+            membership.setAdmins(Collections.singleton(user(0)));
+            membership.setMembers(users);
+
+            TeamConfiguration configuration = new TeamConfiguration();
+            configuration.setMembership(membership);
+            configuration.setPermission(RepositoryPermission.READ);
+            configuration.setExclusions(Collections.singleton(repository(1)));
+            configuration.setOverrides(Collections.singletonMap(repository(2), RepositoryPermission.WRITE));
+            configurations.put(team(team), configuration);
+        }
+
+        OrganizationConfiguration organization = new OrganizationConfiguration();
+        organization.setTeams(configurations);
+
+        Configuration out = new Configuration();
+        out.setOrganizations(Collections.singletonMap(name, organization));
+        return out;
+    }
+
+    /**
+     * Write {@link #toConfiguration()} to a temporary YAML file, which is deleted when the JVM exits.
+     *
+     * @return The file
+     * @throws IOException If the file could not be written
+     */
+    public File writeConfiguration() throws IOException {
+        return writeConfiguration(Collections.singletonList(this));
+    }
+
+    /**
+     * Write the combined configuration of several organizations to a temporary YAML file, which is deleted when the
+     * JVM exits.
+     *
+     * @param organizations The organizations
+     * @return The file
+     * @throws IOException If the file could not be written
+     */
+    public static File writeConfiguration(List<SyntheticOrganization> organizations) throws IOException {
+        Map<String, OrganizationConfiguration> configurations = new LinkedHashMap<>();
+        organizations.forEach(organization -> configurations.putAll(organization.toConfiguration().getOrganizations()));
+
+        Configuration configuration = new Configuration();
+        configuration.setOrganizations(configurations);
+
+        File file = File.createTempFile("configuration-", ".yaml");
+        file.deleteOnExit();
+        new YAMLMapper().writeValue(file, configuration);
+        return file;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import zone.gryphon.github.http.ConnectorType;
+import zone.gryphon.github.http.Connectors;
+import zone.gryphon.github.http.RestClient;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent requests to a {@link FakeGitHub} through each connector, with as many requests in flight
+ * as the application allows by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmarks.xml")
+public class TransportBenchmark {
+
+    @Param({"OKHTTP", "URL_CONNECTION"})
+    private ConnectorType connector;
+
+    @Param({"0", "10"})
+    private int latencyMillis;
+
+    private FakeGitHub github;
+
+    private RestClient client;
+
+    private URL url;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticOrganization organization = new SyntheticOrganization("benchmark", 1000, 10, 10);
+        github = new FakeGitHub(organization, 100, Duration.ofMillis(latencyMillis));
+        client = new RestClient(github.getUrl(), "token benchmark", Connectors.create(connector, 8, Duration.ofSeconds(10), Duration.ofSeconds(60), null));
+        url = client.url("/orgs/benchmark/repos?per_page=100");
+    }
+
+    @TearDown
+    public void tearDown() {
+        github.close();
+    }
+
+    @Benchmark
+    public RestClient.Page page() throws Exception {
+        return client.get(url);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github;
+
+import lombok.Data;
+import lombok.NonNull;
+import zone.gryphon.github.apply.ApplyReport;
+import zone.gryphon.github.planning.Plan;
+import zone.gryphon.github.planning.ReconciliationTarget;
+import zone.gryphon.github.snapshot.OrganizationSnapshot;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Outcome of reconciling a single organization, filled in as the organization is loaded, planned and changed.
+ */
+@Data
+public class OrganizationSummary {
+
+    @NonNull
+    private final String organization;
+
+    @NonNull
+    private final List<ReconciliationTarget> targets;
+
+    /**
+     * Every failure reconciling the organization; a failure of the organization as a whole, such as it not existing,
+     * is recorded as a single failure
+     */
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    /**
+     * State loaded for the organization, if it was captured
+     */
+    private OrganizationSnapshot snapshot;
+
+    /**
+     * Changes planned for the organization, or null if planning was not reached
+     */
+    private Plan plan;
+
+    /**
+     * Outcome of the changes made to the organization, or null if none were attempted
+     */
+    private ApplyReport report;
+
+    private long requests;
+
+    private long durationMillis;
+
+    /**
+     * @return The changes planned for the organization, which are empty if planning was not reached
+     */
+    public Plan getPlanOrEmpty() {
+        return plan == null ? new Plan(Collections.emptyList()) : plan;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+            .append("organization \"").append(organization).append("\": ")
+            .append(targets.size()).append(targets.size() == 1 ? " team" : " teams")
+            .append(" in ").append(durationMillis).append("ms, ")
+            .append(requests).append(requests == 1 ? " request, " : " requests, ")
+            .append(getPlanOrEmpty().getChangeCount()).append(" changes planned");
+
+        if (report != null) {
+            builder.append(", ").append(report.getSucceeded()).append(" made, ")
+                .append(report.getFailed()).append(" failed, ")
+                .append(report.getSkipped()).append(" skipped");
+        }
+
+        if (!failures.isEmpty()) {
+            builder.append(", ").append(failures.size()).append(failures.size() == 1 ? " failure" : " failures");
+        }
+
+        return builder.toString();
+    }
+
+}
@@ -20,39 +20,87 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import com.google.common.base.Strings;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import org.kohsuke.github.GHOrganization;
-import org.kohsuke.github.GHTeam;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+import zone.gryphon.github.apply.ApplyEngine;
+import zone.gryphon.github.apply.ApplyReport;
+import zone.gryphon.github.apply.Journal;
+import zone.gryphon.github.apply.Operation;
+import zone.gryphon.github.apply.OperationCheck;
+import zone.gryphon.github.apply.OperationResult;
+import zone.gryphon.github.cache.CacheStatistics;
 import zone.gryphon.github.cache.CachingOrganization;
 import zone.gryphon.github.cache.CachingTeam;
-import zone.gryphon.github.cache.CachingUser;
+import zone.gryphon.github.cache.GraphQLStateLoader;
+import zone.gryphon.github.cache.OrganizationRegistry;
+import zone.gryphon.github.cache.RestStateLoader;
+import zone.gryphon.github.cache.StateLoader;
+import zone.gryphon.github.cache.StateLoaderType;
+import zone.gryphon.github.cache.UserResolver;
+import zone.gryphon.github.cache.UserStore;
 import zone.gryphon.github.configuration.Configuration;
+import zone.gryphon.github.configuration.ConfigurationCache;
 import zone.gryphon.github.configuration.OrganizationConfiguration;
 import zone.gryphon.github.configuration.TeamConfiguration;
 import zone.gryphon.github.configuration.TeamMembershipConfiguration;
-import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.http.ConnectorType;
+import zone.gryphon.github.http.Connectors;
+import zone.gryphon.github.http.GraphQLClient;
+import zone.gryphon.github.http.HttpCache;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.http.RestClient;
+import zone.gryphon.github.incremental.ConfigurationHashes;
+import zone.gryphon.github.incremental.IncrementalState;
+import zone.gryphon.github.metrics.MetricsReporter;
+import zone.gryphon.github.planning.Plan;
+import zone.gryphon.github.planning.PlanFormat;
+import zone.gryphon.github.planning.Planner;
+import zone.gryphon.github.planning.ReconciliationTarget;
+import zone.gryphon.github.planning.TeamPlan;
+import zone.gryphon.github.snapshot.OrganizationSnapshot;
+import zone.gryphon.github.snapshot.SnapshotStateLoader;
+import zone.gryphon.github.snapshot.StateSnapshot;
 import zone.gryphon.github.utilities.CollectionUtilities;
 import zone.gryphon.github.utilities.FileConverter;
 import zone.gryphon.github.utilities.FileExistsValidator;
+import zone.gryphon.github.utilities.WorkerPool;
+import zone.gryphon.github.webhook.CoalescingQueue;
+import zone.gryphon.github.webhook.WebhookListener;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.ValidatorFactory;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
-import static zone.gryphon.github.model.RepositoryPermission.NONE;
 
 @Slf4j
 public class PermissionAutomationApplication {
@@ -105,6 +153,16 @@ public class PermissionAutomationApplication {
     )
     private File file;
 
+    @Parameter(
+        names = "--configuration-cache",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "" +
+            "File to cache the validated configuration in. When the configuration file is unchanged since the cache " +
+            "was written, the configuration is loaded from the cache without parsing or validating it again."
+    )
+    private File configurationCacheFile;
+
     @Parameter(
         names = {"-h", "--help"},
         help = true,
@@ -112,11 +170,316 @@ public class PermissionAutomationApplication {
     )
     private boolean printHelp = false;
 
-    private final Configuration configuration;
+    @Parameter(
+        names = "--parallelism",
+        arity = 1,
+        description = "Maximum number of teams to process concurrently."
+    )
+    private int parallelism = 4;
+
+    @Parameter(
+        names = "--organization-parallelism",
+        arity = 1,
+        description = "" +
+            "Maximum number of organizations to process concurrently. " +
+            "Organizations share the --parallelism team workers, which are handed out to them in turn."
+    )
+    private int organizationParallelism = 8;
+
+    @Parameter(
+        names = "--virtual-threads",
+        description = "" +
+            "Process teams and fetch pages on virtual threads instead of platform threads. " +
+            "Only has an effect on JVMs which support virtual threads; concurrency is still bounded by --parallelism and --max-concurrent-requests."
+    )
+    private boolean virtualThreads = false;
+
+    @Parameter(
+        names = "--max-concurrent-requests",
+        arity = 1,
+        description = "Maximum number of requests to the Github API which may be in flight at once."
+    )
+    private int maxConcurrentRequests = 8;
+
+    @Parameter(
+        names = "--pages-per-listing",
+        arity = 1,
+        description = "" +
+            "Maximum number of pages of a single listing to fetch concurrently, once the first page shows how many " +
+            "there are. Only applies to the REST API, whose listings link to their last page."
+    )
+    private int pagesPerListing = 4;
+
+    @Parameter(
+        names = "--write-interval",
+        arity = 1,
+        description = "" +
+            "Minimum number of milliseconds between the start of two mutating requests. " +
+            "Github recommends at least one second to avoid triggering its secondary rate limits."
+    )
+    private long writeIntervalMillis = 1000;
+
+    @Parameter(
+        names = "--writes-per-team",
+        arity = 1,
+        description = "" +
+            "Maximum number of changes to make to a single team concurrently. " +
+            "Changes to the same user or repository are always made in order."
+    )
+    private int writesPerTeam = 4;
+
+    @Parameter(
+        names = "--apply-report",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "File to write the outcome of every change to, as JSON, after applying a plan."
+    )
+    private File applyReportFile;
+
+    @Parameter(
+        names = "--journal",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "" +
+            "File to record changes in as they are made. If a run is interrupted while applying changes, the next run " +
+            "with the same configuration finishes making them, without loading the current state or planning again."
+    )
+    private File journalFile;
+
+    @Parameter(
+        names = "--rate-limit-reserve",
+        arity = 1,
+        description = "Number of requests to leave unused in the rate limit; requests wait for the limit to reset instead of using them."
+    )
+    private int rateLimitReserve = 50;
+
+    @Parameter(
+        names = "--connector",
+        arity = 1,
+        description = "" +
+            "HTTP client to send requests to Github with. " +
+            "OKHTTP keeps a connection open for every concurrent request, negotiates HTTP/2 and can cache responses; " +
+            "URL_CONNECTION uses the JDK's client, and ignores the response cache."
+    )
+    private ConnectorType connectorType = ConnectorType.OKHTTP;
+
+    @Parameter(
+        names = "--connect-timeout",
+        arity = 1,
+        description = "Number of seconds to wait for a connection to Github to open."
+    )
+    private int connectTimeoutSeconds = 10;
+
+    @Parameter(
+        names = "--read-timeout",
+        arity = 1,
+        description = "Number of seconds to wait for Github to respond to a request."
+    )
+    private int readTimeoutSeconds = 60;
+
+    @Parameter(
+        names = "--cache-dir",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "" +
+            "Directory to cache Github API responses in between runs. " +
+            "Cached responses are revalidated with conditional requests, which do not count against the rate limit."
+    )
+    private File cacheDirectory;
+
+    @Parameter(
+        names = "--cache-size",
+        arity = 1,
+        description = "Maximum size of the response cache in megabytes; least recently used responses are evicted first."
+    )
+    private long cacheSizeMegabytes = 256;
+
+    @Parameter(
+        names = "--state-loader",
+        arity = 1,
+        description = "" +
+            "How to load the current state of organizations. " +
+            "GRAPHQL loads whole organizations in a few batched queries, and requires token authentication; " +
+            "REST is used instead when no token is provided."
+    )
+    private StateLoaderType stateLoaderType = StateLoaderType.GRAPHQL;
+
+    @Parameter(
+        names = "--plan",
+        description = "Print the changes which would be made, without making any of them."
+    )
+    private boolean planOnly = false;
+
+    @Parameter(
+        names = "--plan-format",
+        arity = 1,
+        description = "Format to print the plan in when using --plan."
+    )
+    private PlanFormat planFormat = PlanFormat.TEXT;
+
+    @Parameter(
+        names = "--plan-file",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "File to write the plan to when using --plan. Defaults to standard out."
+    )
+    private File planFile;
+
+    @Parameter(
+        names = "--save-state",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "" +
+            "File to save the loaded state of the configured organizations to, for later use with --state. " +
+            "Written as JSON if the file name ends in .json, and in a compact binary format otherwise."
+    )
+    private File saveStateFile;
+
+    @Parameter(
+        names = "--state",
+        converter = FileConverter.class,
+        validateValueWith = FileExistsValidator.class,
+        arity = 1,
+        description = "" +
+            "Plan against state previously saved with --save-state instead of loading it from Github. " +
+            "No network access is performed; requires --plan."
+    )
+    private File stateFile;
+
+    @Parameter(
+        names = "--metrics-file",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "File to write metrics to in the Prometheus text format at the end of the run."
+    )
+    private File metricsFile;
+
+    @Parameter(
+        names = "--metrics-push-url",
+        arity = 1,
+        description = "" +
+            "URL of a Prometheus push gateway group to push metrics to at the end of the run, " +
+            "e.g. http://pushgateway:9091/metrics/job/github-permission-automation"
+    )
+    private String metricsPushUrl;
+
+    @Parameter(
+        names = "--daemon",
+        description = "" +
+            "Keep running, reconciling every --interval seconds. The connection, resolved users and responses are kept " +
+            "between reconciliations, so unchanged state is revalidated with conditional requests, which do not count " +
+            "against the rate limit. The configuration file is re-read whenever it changes."
+    )
+    private boolean daemon = false;
+
+    @Parameter(
+        names = "--interval",
+        arity = 1,
+        description = "Number of seconds between the start of two reconciliations in daemon mode."
+    )
+    private long intervalSeconds = 300;
+
+    @Parameter(
+        names = "--webhook-port",
+        arity = 1,
+        description = "" +
+            "Port to receive Github webhook deliveries on in daemon mode. Membership, team, team_add, repository and " +
+            "organization events cause the affected teams to be reconciled, without waiting for the next interval."
+    )
+    private Integer webhookPort;
+
+    @Parameter(
+        names = "--webhook-secret",
+        arity = 1,
+        description = "Secret the webhook was configured with; deliveries which are not signed with it are rejected.",
+        password = true
+    )
+    private String webhookSecret;
+
+    @Parameter(
+        names = "--webhook-window",
+        arity = 1,
+        description = "" +
+            "Number of milliseconds to wait for more webhook deliveries after the first one, " +
+            "so that a burst of events is reconciled together."
+    )
+    private long webhookWindowMillis = 5000;
+
+    @Parameter(
+        names = "--incremental-state",
+        converter = FileConverter.class,
+        arity = 1,
+        description = "" +
+            "File to record hashes of the configuration in after every successful run. Teams whose configuration " +
+            "is unchanged since the last successful run are skipped, unless a full sweep is due."
+    )
+    private File incrementalStateFile;
+
+    @Parameter(
+        names = "--full-sweep-interval",
+        arity = 1,
+        description = "" +
+            "Number of hours after which an incremental run reconciles every team, to correct drift which " +
+            "was not caused by configuration changes, such as new repositories or changes made by hand."
+    )
+    private long fullSweepIntervalHours = 24;
+
+    @Parameter(
+        names = "--detect-drift",
+        description = "Reconcile every team, even if a full sweep is not yet due for an incremental run."
+    )
+    private boolean detectDrift = false;
+
+    @Parameter(
+        names = "--user-ttl",
+        arity = 1,
+        description = "" +
+            "Hours to remember the login of a configured user for before looking it up again. " +
+            "Resolved users are kept in --cache-dir between runs."
+    )
+    private long userTtlHours = 24;
+
+    @Parameter(
+        names = "--missing-user-ttl",
+        arity = 1,
+        description = "Minutes to remember that a configured user does not exist for before looking it up again."
+    )
+    private long missingUserTtlMinutes = 60;
+
+    private final MetricsReporter metrics;
+
+    private final Object reconciliationLock = new Object();
+
+    /**
+     * Resolves configured user names to logins, kept between reconciliations in daemon mode
+     */
+    private final UserResolver users;
+
+    private volatile Configuration configuration;
+
+    private long configurationModified;
+
+    private final RequestScheduler scheduler;
+
+    private final HttpCache cache;
+
+    private final HttpConnector connector;
 
     private final GitHub github;
 
-    private PermissionAutomationApplication(String... args) throws Exception {
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    private final StateLoader.Factory loaders;
+
+    /**
+     * Pool the pages of REST listings are fetched on, or null if state isn't loaded from Github
+     */
+    private final WorkerPool pages;
+
+    /**
+     * @param args Command line arguments, exactly as they would be passed to {@link #main(String...)}
+     */
+    public PermissionAutomationApplication(String... args) throws Exception {
 
         try {
             JCommander.newBuilder()
@@ -140,24 +503,139 @@ public class PermissionAutomationApplication {
             System.exit(0);
         }
 
+        this.metrics = new MetricsReporter(metricsFile, metricsPushUrl == null ? null : new URL(metricsPushUrl));
+
         try {
-            this.configuration = readConfiguration();
+            this.configurationModified = file.lastModified();
+            this.configuration = loadConfiguration(file, configurationCacheFile);
         } catch (IllegalArgumentException e) {
             System.err.println(e.getMessage());
             System.exit(1);
             throw new RuntimeException("This can never be reached");
         }
 
-        this.github = connect();
+        if (stateFile != null && !planOnly) {
+            System.err.println("--state can only be used together with --plan");
+            System.exit(1);
+        }
+
+        if (daemon && stateFile != null) {
+            System.err.println("--daemon cannot be used together with --state");
+            System.exit(1);
+        }
+
+        if (daemon && incrementalStateFile != null) {
+            System.err.println("--incremental-state cannot be used together with --daemon, which always reconciles every team");
+            System.exit(1);
+        }
+
+        if (daemon && journalFile != null) {
+            System.err.println("--journal cannot be used together with --daemon");
+            System.exit(1);
+        }
+
+        if (webhookPort != null && (!daemon || Strings.isNullOrEmpty(webhookSecret))) {
+            System.err.println("--webhook-port requires --daemon and --webhook-secret");
+            System.exit(1);
+        }
+
+        if (daemon && intervalSeconds < 1) {
+            System.err.println("--interval must be positive");
+            System.exit(1);
+        }
+
+        if (daemon && cacheDirectory == null) {
+            // without a response cache, every reconciliation would reload everything from scratch
+            cacheDirectory = Files.createTempDirectory("github-permission-automation-cache").toFile();
+            log.info("No --cache-dir given, caching responses in \"{}\" for the lifetime of the daemon", cacheDirectory.getAbsolutePath());
+        }
+
+        this.scheduler = new RequestScheduler(maxConcurrentRequests, Duration.ofMillis(writeIntervalMillis), rateLimitReserve);
+
+        if (stateFile != null) {
+            this.cache = null;
+            this.connector = null;
+            this.github = null;
+            this.pages = null;
+            this.loaders = createSnapshotStateLoaders();
+            this.users = createUserResolver();
+        } else {
+            this.cache = cacheDirectory == null || connectorType != ConnectorType.OKHTTP ? null : new HttpCache(cacheDirectory, cacheSizeMegabytes * 1024 * 1024);
+            this.connector = createConnector();
+            this.github = connect();
+            this.pages = new WorkerPool("page-fetcher", maxConcurrentRequests, virtualThreads);
+            this.loaders = createStateLoaders();
+            this.users = createUserResolver();
+        }
+    }
+
+    /**
+     * Load a configuration file, from the cache if the file is unchanged since the cache was written, and otherwise by
+     * reading and validating it, and then caching it.
+     *
+     * @param file  The configuration file
+     * @param cache The cache file, or null to always read the configuration file
+     * @return The configuration
+     * @throws IllegalArgumentException If the configuration is invalid
+     * @throws IOException              If the configuration file could not be read
+     */
+    public static Configuration loadConfiguration(@NonNull File file, File cache) throws IOException {
+        long start = System.nanoTime();
+        byte[] content = Files.readAllBytes(file.toPath());
+
+        if (cache == null) {
+            Configuration configuration = readConfiguration(file, content);
+            log.info("Read configuration file \"{}\" in {} ms", file.getAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return configuration;
+        }
+
+        byte[] hash = ConfigurationCache.hash(content);
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+        Optional<Configuration> cached = ConfigurationCache.read(cache, hash);
+
+        if (cached.isPresent()) {
+            sample.stop(phase("configuration-cache"));
+            log.info("Loaded configuration file \"{}\" from cache \"{}\" in {} ms", file.getAbsolutePath(), cache.getAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return cached.get();
+        }
+
+        Configuration configuration = readConfiguration(file, content);
+        log.info("Read configuration file \"{}\" in {} ms", file.getAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        try {
+            ConfigurationCache.write(cache, hash, configuration);
+        } catch (IOException e) {
+            log.warn("Failed to write configuration cache \"{}\"", cache.getAbsolutePath(), e);
+        }
+
+        return configuration;
+    }
+
+    /**
+     * Read and validate a configuration file.
+     *
+     * @param file The configuration file
+     * @return The configuration
+     * @throws IllegalArgumentException If the configuration is invalid
+     * @throws IOException              If the file could not be read
+     */
+    public static Configuration readConfiguration(@NonNull File file) throws IOException {
+        return readConfiguration(file, Files.readAllBytes(file.toPath()));
     }
 
-    private Configuration readConfiguration() throws IOException {
+    private static Configuration readConfiguration(File file, byte[] content) throws IOException {
+        Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+
         Configuration configuration = new YAMLMapper()
             .disable(FAIL_ON_UNKNOWN_PROPERTIES)
-            .readValue(file, Configuration.class);
+            .readValue(content, Configuration.class);
+
+        sample.stop(phase("configuration"));
+        sample = Timer.start(Metrics.globalRegistry);
 
         try (ValidatorFactory factory = Validation.buildDefaultValidatorFactory()) {
             Set<ConstraintViolation<Configuration>> violations = factory.getValidator().validate(configuration);
+            sample.stop(phase("validation"));
 
             if (violations.isEmpty()) {
                 return configuration;
@@ -182,10 +660,19 @@ public class PermissionAutomationApplication {
         }
     }
 
+    private HttpConnector createConnector() {
+        if (cacheDirectory != null && cache == null) {
+            log.warn("Responses are not cached by the {} connector, every request will be sent to Github", connectorType);
+        }
+
+        return Connectors.create(connectorType, maxConcurrentRequests, Duration.ofSeconds(connectTimeoutSeconds), Duration.ofSeconds(readTimeoutSeconds), cache);
+    }
+
     private GitHub connect() throws IOException {
         GitHubBuilder builder = new GitHubBuilder();
 
         builder.withEndpoint(url);
+        builder.withConnector(connector);
 
         if (!Strings.isNullOrEmpty(token)) {
 
@@ -208,162 +695,611 @@ public class PermissionAutomationApplication {
 
         }
 
-        return builder.build();
+        return scheduler.connect(builder);
     }
 
-    public void run() throws IOException {
-        for (Map.Entry<String, OrganizationConfiguration> tuple : configuration.getOrganizations().entrySet()) {
-            process(tuple.getKey(), tuple.getValue());
+    private StateLoader.Factory createStateLoaders() throws IOException {
+        if (stateLoaderType == StateLoaderType.GRAPHQL && Strings.isNullOrEmpty(token)) {
+            log.warn("The GraphQL API requires token authentication, falling back to the REST API to load state");
+            stateLoaderType = StateLoaderType.REST;
         }
-    }
 
-    private void process(String organization, OrganizationConfiguration configuration) throws IOException {
-        for (Map.Entry<String, TeamConfiguration> tuple : configuration.getTeams().entrySet()) {
+        // organizations are only ever addressed by login, so they are never fetched
+        RestClient rest = new RestClient(url, authorization(), connector, scheduler);
 
-            log.info("Processing team \"{}\" in organization \"{}\"", tuple.getKey(), organization);
-            process(organization, tuple.getKey(), tuple.getValue());
+        switch (stateLoaderType) {
+            case GRAPHQL:
+                GraphQLClient client = new GraphQLClient(url, token, connector, scheduler);
+                return (name, account) -> new GraphQLStateLoader(name, client, rest, account, statistics);
+            case REST:
+            default:
+                return (name, account) -> new RestStateLoader(name, rest, account, statistics, pages, pagesPerListing);
         }
     }
 
-    private void process(String organizationName, String teamName, TeamConfiguration teamConfiguration) throws IOException {
-        CachingOrganization organization = new CachingOrganization(github.getOrganization(organizationName));
+    private UserResolver createUserResolver() throws IOException {
+        File file = cacheDirectory == null ? null : new File(cacheDirectory, "users.json");
+        UserStore store = new UserStore(file, Duration.ofHours(userTtlHours), Duration.ofMinutes(missingUserTtlMinutes));
 
-        CachingTeam team = organization.getTeam(teamName);
+        if (github == null) {
+            // no connection when planning against a snapshot, so every configured user is assumed to exist
+            return new UserResolver(names -> names.stream().collect(Collectors.toMap(name -> name, Optional::of)), Integer.MAX_VALUE, store);
+        }
 
-        if (team == null) {
-            log.error("Team \"{}\" under organization \"{}\" does not exist, skipping", teamName, organizationName);
-            return;
+        if (stateLoaderType == StateLoaderType.GRAPHQL) {
+            return UserResolver.graphql(new GraphQLClient(url, token, connector, scheduler), scheduler, store);
         }
 
-        if (teamConfiguration.getMembership() != null) {
-            configureTeamMembership(organization, team, teamConfiguration.getMembership());
-        } else {
-            log.warn("No membership configuration for team \"{}\"", teamName);
+        return UserResolver.rest(github, scheduler, store);
+    }
+
+    private String authorization() {
+        if (!Strings.isNullOrEmpty(token)) {
+            return "token " + token;
+        }
+
+        if (!Strings.isNullOrEmpty(user) && !Strings.isNullOrEmpty(password)) {
+            String credentials = user + ":" + password;
+            return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
         }
 
-        configureRepositoryPermissions(organization, teamName, teamConfiguration);
+        return null;
     }
 
-    private void configureTeamMembership(CachingOrganization organization, CachingTeam team, TeamMembershipConfiguration membership) {
-        Set<String> members = CollectionUtilities.nullToEmpty(membership.getMembers());
-        Set<String> admins = CollectionUtilities.nullToEmpty(membership.getAdmins());
-        Set<String> banned = CollectionUtilities.nullToEmpty(membership.getBanned());
+    private StateLoader.Factory createSnapshotStateLoaders() throws IOException {
+        StateSnapshot snapshot = StateSnapshot.read(stateFile);
 
-        configureMembership(organization, team, members, GHTeam.Role.MEMBER);
-        configureMembership(organization, team, admins, GHTeam.Role.MAINTAINER);
-        configureMembership(organization, team, banned, null);
+        return (name, account) -> {
+            OrganizationSnapshot organization = snapshot.getOrganizations().get(name);
+
+            if (organization == null) {
+                throw new IllegalArgumentException(String.format("Organization \"%s\" is not in state file \"%s\"", name, stateFile.getAbsolutePath()));
+            }
+
+            return new SnapshotStateLoader(name, organization);
+        };
     }
 
-    private void configureMembership(CachingOrganization organization, CachingTeam team, Set<String> members, GHTeam.Role role) {
-        for (String member : members) {
-            Optional<CachingUser> maybeUser = CachingUser.from(github, member);
+    public void run() throws IOException {
+        try {
+            if (daemon) {
+                runDaemon();
+                return;
+            }
+
+            List<Throwable> failures = new ArrayList<>();
+            Set<List<String>> resumed = Collections.emptySet();
 
-            if (!maybeUser.isPresent()) {
-                log.warn("User \"{}\" does not exist, skipping", member);
-                continue;
+            if (journalFile != null && !planOnly) {
+                Optional<Journal> interrupted = Journal.resume(journalFile);
+
+                if (interrupted.isPresent() && interrupted.get().getConfiguration().equals(ConfigurationHashes.hash(configuration))) {
+                    Set<List<String>> journaled = teams(interrupted.get());
+                    failures.addAll(resume(interrupted.get()));
+
+                    // teams whose plan was applied in full are up to date; the rest of the configuration still needs reconciling
+                    resumed = failures.isEmpty() ? journaled : Collections.emptySet();
+                } else if (interrupted.isPresent()) {
+                    log.warn("Discarding the journal of an interrupted run, since the configuration has changed; planning again from the current configuration");
+                    interrupted.get().close();
+                }
             }
 
-            CachingUser user = maybeUser.get();
+            long start = System.currentTimeMillis();
+            IncrementalState previous = incrementalStateFile != null && incrementalStateFile.exists() ? IncrementalState.read(incrementalStateFile) : null;
+            boolean fullSweep = incrementalStateFile == null || previous == null || detectDrift
+                || start - previous.getLastFullSweep() >= TimeUnit.HOURS.toMillis(fullSweepIntervalHours);
+
+            List<ReconciliationTarget> targets = targets(configuration);
 
-            final String NONE = "NONE";
+            if (!fullSweep) {
+                List<ReconciliationTarget> changed = changed(previous, targets);
+                log.info("Reconciling {} of {} teams, whose configuration changed since the last successful run; next full sweep is due after {}",
+                    changed.size(), targets.size(), new Date(previous.getLastFullSweep() + TimeUnit.HOURS.toMillis(fullSweepIntervalHours)));
+                targets = changed;
+            }
 
-            int padding = Math.max(NONE.length(), Arrays.stream(GHTeam.Role.values())
-                .map(Enum::name)
-                .mapToInt(String::length)
-                .max()
-                .orElse(0));
+            if (!resumed.isEmpty()) {
+                Set<List<String>> done = resumed;
+                targets = targets.stream().filter(target -> !done.contains(Arrays.asList(target.getOrganization(), target.getTeam()))).collect(Collectors.toList());
+                log.info("Reconciling the remaining {} teams, which were not planned by the interrupted run", targets.size());
+            }
 
-            // pad the logging so that it all lines up
-            String width = String.format("%%-%ds", padding);
+            failures.addAll(reconcile(configuration, targets));
 
-            String roleName = role == null ? NONE : role.name();
+            if (failures.isEmpty() && incrementalStateFile != null && !planOnly) {
+                IncrementalState next = IncrementalState.of(configuration);
+                next.setLastFullSweep(fullSweep ? start : previous.getLastFullSweep());
+                next.write(incrementalStateFile);
+            }
 
-            log.info("Setting access to team \"{}\" in organization \"{}\" as {} for user \"{}\" ({})",
-                team.getName(), organization.getLogin(), String.format(width, roleName), member, user.getName());
+            throwFailures(failures);
+        } finally {
+            if (pages != null) {
+                pages.close();
+            }
 
-            if (role == null) {
-                team.remove(user.getRawUser());
-            } else {
-                team.add(user.getRawUser(), role);
+            if (cache != null) {
+                cache.close();
             }
+
+            metrics.close();
         }
     }
 
-    private void configureRepositoryPermissions(CachingOrganization organization, String teamName, TeamConfiguration teamConfiguration) {
-        Map<String, RepositoryPermission> repositoryPermissions = calculateRepositoryPermissionsFor(organization, teamConfiguration);
+    /**
+     * @return The organization and name of every team planned in the journal
+     */
+    private static Set<List<String>> teams(Journal journal) {
+        Set<List<String>> out = new HashSet<>();
+        journal.getSlugs().forEach((organization, teams) -> teams.keySet().forEach(team -> out.add(Arrays.asList(organization, team))));
+        return out;
+    }
 
-        CachingTeam team = organization.getTeam(teamName);
+    private static void throwFailures(List<Throwable> failures) {
+        if (!failures.isEmpty()) {
+            IllegalStateException e = new IllegalStateException(String.format("Failed to process %d team%s", failures.size(), failures.size() == 1 ? "" : "s"));
+            failures.forEach(e::addSuppressed);
+            throw e;
+        }
+    }
 
-        int padding = Arrays.stream(RepositoryPermission.values())
-            .map(Enum::name)
-            .map(String::length)
-            .mapToInt(Integer::intValue)
-            .max()
-            .orElse(0);
+    /**
+     * Finish applying the plan recorded in the journal of an interrupted run. Teams are addressed by the slugs
+     * recorded in the journal, so no listings are needed; only the users and repositories being changed are fetched.
+     * Organizations which had not been planned yet when the run was interrupted are reconciled afterwards, as usual.
+     *
+     * @return Every failure processing an individual team
+     */
+    private List<Throwable> resume(Journal journal) throws IOException {
+        log.info("Resuming interrupted run from journal \"{}\", {} of {} changes were already made",
+            journalFile.getAbsolutePath(), journal.getSucceeded(), journal.getOperations().size());
+
+        OrganizationRegistry organizations = new OrganizationRegistry(scheduler, loaders, statistics);
+        journal.getSlugs().forEach((organization, teams) -> teams.forEach(organizations.get(organization)::addTeam));
+
+        try (WorkerPool writers = new WorkerPool("apply-worker", parallelism * writesPerTeam, virtualThreads)) {
+            Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+            ApplyReport report = apply(writers, organizations, journal.getOperations(), journal, 0);
+            log.info("Finished applying changes from the journal in {}ms", TimeUnit.NANOSECONDS.toMillis(sample.stop(phase("apply"))));
+            report(report);
+            finish(journal, report.failuresByTeam());
+            return report.failuresByTeam();
+        } finally {
+            log.info("Organization cache statistics: {}", organizations.getStatistics());
+            log.info("Request scheduler statistics: {}", scheduler);
+            metrics.report();
+        }
+    }
 
-        // pad the logging so that it all lines up
-        String width = String.format("%%-%ds", padding);
+    private void runDaemon() throws IOException {
+        log.info("Running as a daemon, reconciling every {} seconds", intervalSeconds);
 
-        for (Map.Entry<String, RepositoryPermission> tuple : repositoryPermissions.entrySet()) {
-            String repositoryName = tuple.getKey();
-            RepositoryPermission permission = tuple.getValue();
+        try (CoalescingQueue queue = webhookPort == null ? null : new CoalescingQueue(Duration.ofMillis(webhookWindowMillis), this::reconcileWebhookTargets)) {
+            WebhookListener listener = queue == null ? null : new WebhookListener(webhookPort, webhookSecret, queue);
 
-            log.info("Granting team \"{}\" role {} over \"{}/{}\"", teamName, String.format(width, permission), organization.getLogin(), repositoryName);
-            if (Objects.equals(NONE, permission)) {
-                team.remove(organization.getRepository(repositoryName));
-            } else {
-                team.add(organization.getRepository(repositoryName), map(permission));
+            try {
+                reconcileOnInterval();
+            } finally {
+                // stop accepting deliveries before the queue they are added to is closed
+                if (listener != null) {
+                    listener.close();
+                }
             }
         }
+
+        log.info("Daemon interrupted, exiting");
     }
 
-    private GHOrganization.Permission map(RepositoryPermission permission) {
-        switch (permission) {
-            case WRITE:
-                return GHOrganization.Permission.PUSH;
-            case READ:
-                return GHOrganization.Permission.PULL;
-            case ADMIN:
-                return GHOrganization.Permission.ADMIN;
-            case NONE:
-            default:
-                throw new IllegalArgumentException("Cannot map permission \"" + permission + "\"");
+    private void reconcileOnInterval() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long start = System.nanoTime();
+
+            try {
+                reloadConfiguration();
+                logFailures(reconcile(configuration, targets(configuration)));
+            } catch (IOException | RuntimeException e) {
+                log.error("Reconciliation failed", e);
+            }
+
+            long wait = TimeUnit.SECONDS.toMillis(intervalSeconds) - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            try {
+                Thread.sleep(Math.max(0, wait));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    private Map<String, RepositoryPermission> calculateRepositoryPermissionsFor(CachingOrganization organization, TeamConfiguration team) {
-        final Set<String> available = organization.getRepositoryNames();
+    private void reconcileWebhookTargets(List<ReconciliationTarget> targets) {
+        Configuration current = configuration;
 
-        final RepositoryPermission defaultPermission = Optional.ofNullable(team.getPermission()).orElse(NONE);
-        final Set<String> exclusions = CollectionUtilities.nullToEmpty(team.getExclusions());
-        final Set<String> requestedRepos = CollectionUtilities.nullToEmpty(team.getRepositories());
-        final Map<String, RepositoryPermission> overrides = CollectionUtilities.nullToEmpty(team.getOverrides());
-
-        final Set<String> requested = new TreeSet<>(CollectionUtilities.firstNonEmpty(requestedRepos, available));
+        try {
+            logFailures(reconcile(current, expand(current, targets)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        if (requested.isEmpty()) {
-            return Collections.emptyMap();
+    private void logFailures(List<Throwable> failures) {
+        if (!failures.isEmpty()) {
+            log.error("Failed to process {} team{}, retrying next reconciliation", failures.size(), failures.size() == 1 ? "" : "s");
         }
+    }
 
-        final Map<String, RepositoryPermission> out = new HashMap<>();
+    /**
+     * @return The targets whose configuration has changed since the given state was recorded
+     */
+    private List<ReconciliationTarget> changed(IncrementalState previous, List<ReconciliationTarget> targets) {
+        List<ReconciliationTarget> out = new ArrayList<>();
+        Map<String, Boolean> unchangedOrganizations = new HashMap<>();
 
-        for (String repository : requested) {
+        for (ReconciliationTarget target : targets) {
+            OrganizationConfiguration organization = configuration.getOrganizations().get(target.getOrganization());
 
-            if (exclusions.contains(repository)) {
-                log.debug("Repository \"{}\" is excluded, skipping", repository);
+            if (unchangedOrganizations.computeIfAbsent(target.getOrganization(), name -> previous.isUnchanged(name, organization))) {
                 continue;
             }
 
-            if (!available.contains(repository)) {
-                log.warn("Requested repository \"{}/{}\" does not exist, ignoring", organization.getLogin(), repository);
+            if (!previous.isUnchanged(target.getOrganization(), target.getTeam(), organization.getTeams().get(target.getTeam()))) {
+                out.add(target);
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * @return Targets covering every aspect of every configured team
+     */
+    private static List<ReconciliationTarget> targets(Configuration configuration) {
+        List<ReconciliationTarget> out = new ArrayList<>();
+
+        for (Map.Entry<String, OrganizationConfiguration> organization : configuration.getOrganizations().entrySet()) {
+            for (String team : organization.getValue().getTeams().keySet()) {
+                out.add(ReconciliationTarget.all(organization.getKey(), team));
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Resolve targets covering every team in an organization to the configured teams, merge targets for the same team,
+     * and drop targets for teams which aren't configured.
+     */
+    private static List<ReconciliationTarget> expand(Configuration configuration, List<ReconciliationTarget> targets) {
+        Map<List<String>, ReconciliationTarget> out = new LinkedHashMap<>();
+
+        for (ReconciliationTarget target : targets) {
+            OrganizationConfiguration organization = configuration.getOrganizations().get(target.getOrganization());
+
+            if (organization == null) {
                 continue;
             }
 
-            out.put(repository, overrides.getOrDefault(repository, defaultPermission));
+            for (String team : organization.getTeams().keySet()) {
+                if (target.getTeam() == null || target.getTeam().equals(team)) {
+                    ReconciliationTarget resolved = new ReconciliationTarget(target.getOrganization(), team, target.isMembers(), target.isRepositories());
+                    out.merge(Arrays.asList(target.getOrganization(), team), resolved, ReconciliationTarget::merge);
+                }
+            }
+        }
+
+        return new ArrayList<>(out.values());
+    }
+
+    /**
+     * Re-read the configuration file if it has been modified since it was last read.
+     * An invalid configuration is logged and ignored, so the daemon keeps enforcing the last valid configuration.
+     */
+    private void reloadConfiguration() throws IOException {
+        long modified = file.lastModified();
+
+        if (modified == configurationModified) {
+            return;
+        }
+
+        try {
+            configuration = loadConfiguration(file, configurationCacheFile);
+            log.info("Reloaded configuration file \"{}\"", file.getAbsolutePath());
+        } catch (IllegalArgumentException e) {
+            log.error("Ignoring invalid configuration, continuing with the last valid configuration. {}", e.getMessage());
+        }
+
+        configurationModified = modified;
+    }
+
+    /**
+     * Load the current state of the given teams, and plan or apply the changes needed to match the configuration.
+     * Only one reconciliation runs at a time.
+     *
+     * @return Every failure processing an individual team
+     */
+    private List<Throwable> reconcile(Configuration configuration, List<ReconciliationTarget> targets) throws IOException {
+        synchronized (reconciliationLock) {
+            return reconcileExclusively(configuration, targets);
+        }
+    }
+
+    private List<Throwable> reconcileExclusively(Configuration configuration, List<ReconciliationTarget> targets) throws IOException {
+        OrganizationRegistry organizations = new OrganizationRegistry(scheduler, loaders, statistics);
+        List<OrganizationSummary> summaries = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        long start = System.nanoTime();
+
+        targets.stream()
+            .collect(Collectors.groupingBy(ReconciliationTarget::getOrganization, LinkedHashMap::new, Collectors.toList()))
+            .forEach((organization, organizationTargets) -> summaries.add(new OrganizationSummary(organization, organizationTargets)));
+
+        Journal journal = journalFile == null || planOnly ? null : Journal.start(journalFile, ConfigurationHashes.hash(configuration));
+        int organizationWorkers = Math.max(1, Math.min(organizationParallelism, summaries.size()));
+
+        try (WorkerPool teams = new WorkerPool("team-worker", parallelism, virtualThreads);
+             WorkerPool writers = new WorkerPool("apply-worker", parallelism * writesPerTeam, virtualThreads);
+             WorkerPool pipelines = new WorkerPool("organization-worker", organizationWorkers, virtualThreads)) {
+
+            Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+            users.resolve(teams, configuredUsers(configuration, targets));
+            failures.addAll(teams.await());
+            users.save();
+            log.info("Resolved users in {}ms, with {} user lookups", TimeUnit.NANOSECONDS.toMillis(sample.stop(phase("users"))), users.getRequests());
+
+            // organizations share the worker pools, which hand out workers to them in turn
+            for (OrganizationSummary summary : summaries) {
+                pipelines.submit(() -> reconcile(summary, organizations, configuration, teams, writers, journal));
+            }
+
+            failures.addAll(pipelines.await());
+        } finally {
+            log.info("Organization cache statistics: {}", organizations.getStatistics());
+            log.info("Request scheduler statistics: {}", scheduler);
+
+            if (cache != null) {
+                log.info("Response cache statistics: {}", cache);
+            }
+
+            metrics.report();
+        }
+
+        summaries.forEach(summary -> failures.addAll(summary.getFailures()));
+        log.info("Reconciled {} organizations in {}ms", summaries.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if (saveStateFile != null) {
+            StateSnapshot snapshot = new StateSnapshot();
+            snapshot.setOrganizations(new TreeMap<>());
+            summaries.stream().filter(summary -> summary.getSnapshot() != null).forEach(summary -> snapshot.getOrganizations().put(summary.getOrganization(), summary.getSnapshot()));
+            snapshot.write(saveStateFile);
+            log.info("Saved current state to \"{}\"", saveStateFile.getAbsolutePath());
+        }
+
+        if (planOnly) {
+            List<TeamPlan> plans = new ArrayList<>();
+            summaries.forEach(summary -> plans.addAll(summary.getPlanOrEmpty().getTeams()));
+            print(new Plan(plans));
+        } else {
+            List<OperationResult> results = new ArrayList<>();
+            summaries.stream().filter(summary -> summary.getReport() != null).forEach(summary -> results.addAll(summary.getReport().getResults()));
+            report(new ApplyReport(results));
+        }
+
+        if (journal != null) {
+            finish(journal, failures);
+        }
+
+        return failures;
+    }
+
+    /**
+     * Delete the journal if nothing failed. Otherwise it is kept, so that the next run retries the changes which
+     * haven't been made, rather than planning again.
+     */
+    private void finish(Journal journal, List<Throwable> failures) throws IOException {
+        if (failures.isEmpty()) {
+            journal.complete();
+            return;
+        }
+
+        log.warn("Keeping journal \"{}\", since {} of {} changes have not been made; the next run retries them",
+            journalFile.getAbsolutePath(), journal.getOperations().size() - journal.getSucceeded(), journal.getOperations().size());
+        journal.close();
+    }
+
+    /**
+     * Load, plan and change a single organization. Everything which goes wrong is recorded in the summary instead of
+     * being thrown, so that a failure in one organization doesn't affect any other.
+     */
+    private void reconcile(OrganizationSummary summary, OrganizationRegistry organizations, Configuration configuration, WorkerPool teams, WorkerPool writers, Journal journal) {
+        String name = summary.getOrganization();
+        long start = System.nanoTime();
+        CachingOrganization organization = null;
+
+        try {
+            organization = organizations.get(name);
+
+            Timer.Sample sample = Timer.start(Metrics.globalRegistry);
+            summary.getFailures().addAll(WorkerPool.await(fetch(teams, organization, configuration, summary.getTargets())));
+            log.info("Loaded current state of organization \"{}\" in {}ms", name, TimeUnit.NANOSECONDS.toMillis(sample.stop(phase("fetch"))));
+
+            if (saveStateFile != null) {
+                summary.setSnapshot(StateSnapshot.capture(organization));
+            }
+
+            sample = Timer.start(Metrics.globalRegistry);
+            Plan plan = plan(organizations, organization, configuration, summary.getTargets(), summary.getFailures());
+            summary.setPlan(plan);
+            log.info("Planned {} changes across {} teams in organization \"{}\" in {}ms",
+                plan.getChangeCount(), plan.getTeams().size(), name, TimeUnit.NANOSECONDS.toMillis(sample.stop(phase("plan"))));
+
+            if (!planOnly) {
+                for (TeamPlan team : plan.getTeams()) {
+                    log.info("Team \"{}\" in organization \"{}\" already has the expected role over {} of {} repositories",
+                        team.getTeam(), team.getOrganization(), team.getUnchangedRepositories(), team.getUnchangedRepositories() + team.getRepositories().size());
+                }
+
+                List<Operation> operations = ApplyEngine.operations(plan);
+                int firstId = journal == null ? 0 : journal.plan(operations, slugs(organization, plan));
+
+                sample = Timer.start(Metrics.globalRegistry);
+                ApplyReport report = apply(writers, organizations, operations, journal, firstId);
+                summary.setReport(report);
+                summary.getFailures().addAll(report.failuresByTeam());
+                log.info("Applied changes to organization \"{}\" in {}ms: {}", name, TimeUnit.NANOSECONDS.toMillis(sample.stop(phase("apply"))), report);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to reconcile organization \"{}\"", name, e);
+            summary.getFailures().add(e);
+        } finally {
+            summary.setRequests(organization == null ? 0 : organization.getRequests());
+            summary.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            Metrics.timer("automation.organization", "organization", name).record(summary.getDurationMillis(), TimeUnit.MILLISECONDS);
+            log.info("Finished {}", summary);
+        }
+    }
+
+    /**
+     * @return Every user configured for the membership of the given targets
+     */
+    private static List<String> configuredUsers(Configuration configuration, List<ReconciliationTarget> targets) {
+        List<String> out = new ArrayList<>();
+
+        for (ReconciliationTarget target : targets) {
+            TeamMembershipConfiguration membership = configuration.getOrganizations().get(target.getOrganization()).getTeams().get(target.getTeam()).getMembership();
+
+            if (target.isMembers() && membership != null) {
+                Stream.of(membership.getMembers(), membership.getAdmins(), membership.getBanned())
+                    .map(CollectionUtilities::nullToEmpty)
+                    .forEach(out::addAll);
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Load the current state of the given teams of an organization.
+     *
+     * @return Futures of the teams being loaded
+     */
+    private List<CompletableFuture<Void>> fetch(WorkerPool pool, CachingOrganization organization, Configuration configuration, List<ReconciliationTarget> targets) {
+        Map<String, TeamConfiguration> teams = configuration.getOrganizations().get(organization.getLogin()).getTeams();
+
+        if (targets.stream().anyMatch(target -> target.isRepositories() && Planner.needsRepositoryIndex(teams.get(target.getTeam())))) {
+            // loaded up front, rather than by whichever team needs it first, so that no worker sits waiting for it
+            organization.getRepositories();
+        }
+
+        List<CompletableFuture<Void>> out = new ArrayList<>();
+
+        for (ReconciliationTarget target : targets) {
+            String teamName = target.getTeam();
+            TeamConfiguration teamConfiguration = teams.get(teamName);
+
+            out.add(pool.submit(() -> {
+                log.info("Loading team \"{}\" in organization \"{}\"", teamName, organization.getLogin());
+
+                try {
+                    if (target.isRepositories() && !Planner.needsRepositoryIndex(teamConfiguration)) {
+                        teamConfiguration.getRepositories().forEach(organization::findRepository);
+                    }
+
+                    CachingTeam team = organization.getTeam(teamName);
+
+                    if (team != null) {
+                        team.load(target.isMembers(), target.isRepositories());
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Failed to load team \"{}\" in organization \"{}\"", teamName, organization.getLogin(), e);
+                    throw e;
+                }
+            }));
         }
 
         return out;
     }
 
+    private Plan plan(OrganizationRegistry organizations, CachingOrganization organization, Configuration configuration, List<ReconciliationTarget> targets, List<Throwable> failures) {
+        Planner planner = new Planner(organizations, users::get);
+        List<TeamPlan> teams = new ArrayList<>();
+
+        Map<String, TeamConfiguration> teamConfigurations = configuration.getOrganizations().get(organization.getLogin()).getTeams();
+        planner.prepare(organization, targets.stream()
+            .filter(ReconciliationTarget::isRepositories)
+            .map(target -> teamConfigurations.get(target.getTeam()))
+            .collect(Collectors.toList()));
+
+        for (ReconciliationTarget target : targets) {
+            TeamConfiguration teamConfiguration = configuration.getOrganizations().get(target.getOrganization()).getTeams().get(target.getTeam());
+
+            try {
+                Optional<TeamPlan> plan = planner.plan(organization, target.getTeam(), teamConfiguration, target.isMembers(), target.isRepositories());
+
+                if (plan.isPresent()) {
+                    teams.add(plan.get());
+                } else {
+                    // a missing team was not reconciled, so the run must not record its configuration as applied
+                    failures.add(new IllegalStateException(String.format("Team \"%s\" under organization \"%s\" does not exist", target.getTeam(), target.getOrganization())));
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to plan team \"{}\" in organization \"{}\"", target.getTeam(), target.getOrganization(), e);
+                failures.add(e);
+            }
+        }
+
+        return new Plan(teams);
+    }
+
+    /**
+     * Make the given operations, recording them in the journal if there is one.
+     *
+     * @param firstId ID of the first operation in the journal
+     * @return The outcome of every operation
+     */
+    private ApplyReport apply(WorkerPool writers, OrganizationRegistry organizations, List<Operation> operations, Journal journal, int firstId) {
+        OperationCheck check = journal == null ? null : new OperationCheck(new RestClient(url, authorization(), connector, scheduler), scheduler);
+        ApplyEngine engine = new ApplyEngine(organizations, writesPerTeam, journal, check);
+        return engine.apply(writers, operations, firstId);
+    }
+
+    /**
+     * Log the outcome of every change made by a run, and write it to the apply report if one was requested.
+     */
+    private void report(ApplyReport report) throws IOException {
+        log.info("Applied changes: {}", report);
+
+        if (applyReportFile != null) {
+            report.write(applyReportFile);
+            log.info("Wrote apply report to \"{}\"", applyReportFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * @return Map of organization -&gt; team name -&gt; slug, of every team in the plan
+     */
+    private static Map<String, Map<String, String>> slugs(CachingOrganization organization, Plan plan) {
+        Map<String, String> out = new TreeMap<>();
+
+        for (TeamPlan team : plan.getTeams()) {
+            out.put(team.getTeam(), organization.getTeam(team.getTeam()).getSlug());
+        }
+
+        return Collections.singletonMap(organization.getLogin(), out);
+    }
+
+    private void print(Plan plan) throws IOException {
+        String formatted = planFormat.format(plan);
+
+        if (planFile == null) {
+            System.out.print(formatted);
+        } else {
+            Files.write(planFile.toPath(), formatted.getBytes(StandardCharsets.UTF_8));
+            log.info("Wrote plan to \"{}\"", planFile.getAbsolutePath());
+        }
+    }
+
+    private static Timer phase(String name) {
+        return Metrics.timer("automation.phase", "phase", name);
+    }
 
 }
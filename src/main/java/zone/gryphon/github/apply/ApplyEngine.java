@@ -0,0 +1,343 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.apply;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.kohsuke.github.HttpException;
+import zone.gryphon.github.cache.CachingOrganization;
+import zone.gryphon.github.cache.CachingTeam;
+import zone.gryphon.github.cache.OrganizationRegistry;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+import zone.gryphon.github.planning.MembershipChange;
+import zone.gryphon.github.planning.Plan;
+import zone.gryphon.github.planning.RepositoryChange;
+import zone.gryphon.github.planning.TeamPlan;
+import zone.gryphon.github.utilities.WorkerPool;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Makes the changes of a {@link Plan}.
+ * <p>
+ * The operations of each team are grouped into chains by the state they modify (a user's membership, or the team's
+ * permission over a repository). Operations in a chain are made in order, one at a time, while separate chains are
+ * independent and are worked through by up to {@code writesPerTeam} lanes per team. Lanes of different teams are
+ * interleaved on the worker pool, so every team makes progress at once instead of teams being processed one after
+ * another. The request scheduler still paces the writes themselves.
+ * <p>
+ * A failed operation does not abort the rest of the plan; it is retried if the failure looks transient, and otherwise
+ * recorded, along with any later operations of the same chain, which are skipped.
+ * <p>
+ * When given a {@link Journal}, every operation is recorded in it as it is made. Operations which the journal shows
+ * already succeeded are not made again, and operations which were started without being recorded as succeeding are
+ * checked first, so resuming an interrupted run makes no write twice.
+ */
+@Slf4j
+public class ApplyEngine {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    // pad the logging so that it all lines up
+    private static final String ROLE_FORMAT = padding(TeamRole.values());
+
+    private static final String PERMISSION_FORMAT = padding(RepositoryPermission.values());
+
+    private final OrganizationRegistry organizations;
+
+    private final int writesPerTeam;
+
+    private final Journal journal;
+
+    private final OperationCheck check;
+
+    /**
+     * @param organizations Organizations to make changes in
+     * @param writesPerTeam Maximum number of operations to make concurrently for a single team
+     * @param journal       Journal to record operations in, or null to not record them
+     * @param check         Used to check operations which the journal shows may or may not have been made,
+     *                      or null to make them again
+     */
+    public ApplyEngine(@NonNull OrganizationRegistry organizations, int writesPerTeam, Journal journal, OperationCheck check) {
+        if (writesPerTeam < 1) {
+            throw new IllegalArgumentException("Writes per team must be positive, got " + writesPerTeam);
+        }
+
+        this.organizations = organizations;
+        this.writesPerTeam = writesPerTeam;
+        this.journal = journal;
+        this.check = check;
+    }
+
+    /**
+     * @return The operations needed to make every change of the given plan, in plan order
+     */
+    public static List<Operation> operations(@NonNull Plan plan) {
+        List<Operation> out = new ArrayList<>();
+        plan.getTeams().forEach(team -> out.addAll(operations(team)));
+        return out;
+    }
+
+    /**
+     * @return The operations needed to make the changes of the given team, membership changes first
+     */
+    public static List<Operation> operations(@NonNull TeamPlan plan) {
+        List<Operation> out = new ArrayList<>();
+
+        for (MembershipChange change : plan.getMembership()) {
+            out.add(change.getTo() == TeamRole.NONE
+                ? new Operation(plan.getOrganization(), plan.getTeam(), Operation.Kind.REMOVE_MEMBER, change.getUser(), null, null)
+                : new Operation(plan.getOrganization(), plan.getTeam(), Operation.Kind.ADD_MEMBER, change.getUser(), change.getTo(), null));
+        }
+
+        for (RepositoryChange change : plan.getRepositories()) {
+            out.add(change.getTo() == RepositoryPermission.NONE
+                ? new Operation(plan.getOrganization(), plan.getTeam(), Operation.Kind.REVOKE_REPOSITORY, change.getRepository(), null, null)
+                : new Operation(plan.getOrganization(), plan.getTeam(), Operation.Kind.GRANT_REPOSITORY, change.getRepository(), null, change.getTo()));
+        }
+
+        return out;
+    }
+
+    /**
+     * Make the given operations, waiting for all of them to finish.
+     *
+     * @param pool       Pool to make the changes in, which may be shared with other callers
+     * @param operations The operations, as returned by {@link #operations(Plan)}; when resuming from a journal, the
+     *                   operations recorded in it
+     * @param firstId    ID of the first operation in the journal; the rest are numbered consecutively
+     * @return The outcome of every operation, in order
+     */
+    public ApplyReport apply(@NonNull WorkerPool pool, @NonNull List<Operation> operations, int firstId) {
+        // chains hold indexes into the list of operations, so results can be reported in order
+        Map<List<String>, Map<String, List<Integer>>> chainsByTeam = new LinkedHashMap<>();
+
+        for (int index = 0; index < operations.size(); index++) {
+            Operation operation = operations.get(index);
+            chainsByTeam.computeIfAbsent(Arrays.asList(operation.getOrganization(), operation.getTeam()), key -> new LinkedHashMap<>())
+                .computeIfAbsent(operation.key(), key -> new ArrayList<>())
+                .add(index);
+        }
+
+        List<Queue<List<Integer>>> teams = new ArrayList<>();
+        chainsByTeam.values().forEach(chains -> teams.add(new ConcurrentLinkedQueue<>(chains.values())));
+
+        OperationResult[] results = new OperationResult[operations.size()];
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+
+        for (int lane = 0; lane < writesPerTeam; lane++) {
+            for (Queue<List<Integer>> chains : teams) {
+                if (lane < chains.size()) {
+                    lanes.add(pool.submit(() -> drain(chains, operations, firstId, results)));
+                }
+            }
+        }
+
+        for (Throwable e : WorkerPool.await(lanes)) {
+            log.error("Unexpected failure while applying changes", e);
+        }
+
+        ApplyReport report = new ApplyReport(Arrays.asList(results));
+
+        for (OperationResult result : report.getResults()) {
+            if (result.getStatus() != OperationResult.Status.SUCCEEDED) {
+                log.error("Could not {}: {}", result.getOperation(), result.getError());
+            }
+        }
+
+        return report;
+    }
+
+    private void drain(Queue<List<Integer>> chains, List<Operation> operations, int firstId, OperationResult[] results) {
+        List<Integer> chain;
+
+        while ((chain = chains.poll()) != null) {
+            OperationResult failed = null;
+
+            for (int index : chain) {
+                Operation operation = operations.get(index);
+
+                results[index] = failed == null
+                    ? journaled(firstId + index, operation)
+                    : new OperationResult(operation, OperationResult.Status.SKIPPED, 0, "an earlier change to the same state failed: " + failed.getOperation(), null);
+
+                if (results[index].getStatus() != OperationResult.Status.SUCCEEDED && failed == null) {
+                    failed = results[index];
+                }
+
+                Metrics.counter("automation.apply.operations", "kind", operation.getKind().name(), "status", results[index].getStatus().name()).increment();
+            }
+        }
+    }
+
+    private OperationResult journaled(int id, Operation operation) {
+        if (journal == null) {
+            return attempt(operation);
+        }
+
+        if (journal.isSucceeded(id)) {
+            log.debug("Not repeating operation to {}, it was made by an interrupted run", operation);
+            return new OperationResult(operation, OperationResult.Status.SUCCEEDED, 0, null, null);
+        }
+
+        if (journal.isInDoubt(id) && check != null && isApplied(operation)) {
+            log.info("Not repeating operation to {}, it was made by an interrupted run which did not record it", operation);
+            journal.succeeded(id);
+            return new OperationResult(operation, OperationResult.Status.SUCCEEDED, 0, null, null);
+        }
+
+        journal.started(id);
+        OperationResult result = attempt(operation);
+
+        if (result.getStatus() == OperationResult.Status.SUCCEEDED) {
+            journal.succeeded(id);
+        }
+
+        return result;
+    }
+
+    private boolean isApplied(Operation operation) {
+        try {
+            return check.isApplied(operation, team(operation));
+        } catch (RuntimeException e) {
+            log.warn("Failed to check whether {} was already made, making it again: {}", operation, rootCause(e).getMessage());
+            return false;
+        }
+    }
+
+    private OperationResult attempt(Operation operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                execute(operation);
+                return new OperationResult(operation, OperationResult.Status.SUCCEEDED, attempt, null, null);
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS || !isTransient(e)) {
+                    return new OperationResult(operation, OperationResult.Status.FAILED, attempt, String.valueOf(rootCause(e).getMessage()), e);
+                }
+
+                log.warn("Failed to {} ({}), retrying in {}ms (attempt {} of {})", operation, rootCause(e).getMessage(), RETRY_DELAY_MILLIS * attempt, attempt, MAX_ATTEMPTS);
+
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return new OperationResult(operation, OperationResult.Status.FAILED, attempt, "interrupted while waiting to retry", e);
+                }
+            }
+        }
+    }
+
+    private void execute(Operation operation) {
+        CachingOrganization organization = organizations.get(operation.getOrganization());
+        CachingTeam team = team(operation);
+
+        switch (operation.getKind()) {
+            case ADD_MEMBER:
+                log.info("Setting access to team \"{}\" in organization \"{}\" as {} for user \"{}\"",
+                    team.getName(), organization.getLogin(), String.format(ROLE_FORMAT, operation.getRole()), operation.getTarget());
+                team.setRole(operation.getTarget(), operation.getRole());
+                break;
+            case REMOVE_MEMBER:
+                log.info("Setting access to team \"{}\" in organization \"{}\" as {} for user \"{}\"",
+                    team.getName(), organization.getLogin(), String.format(ROLE_FORMAT, TeamRole.NONE), operation.getTarget());
+                team.setRole(operation.getTarget(), TeamRole.NONE);
+                break;
+            case GRANT_REPOSITORY:
+                log.info("Granting team \"{}\" role {} over \"{}/{}\"", team.getName(), String.format(PERMISSION_FORMAT, operation.getPermission()), organization.getLogin(), operation.getTarget());
+                team.setPermission(repository(organization, operation.getTarget()), operation.getPermission());
+                break;
+            case REVOKE_REPOSITORY:
+            default:
+                log.info("Granting team \"{}\" role {} over \"{}/{}\"", team.getName(), String.format(PERMISSION_FORMAT, RepositoryPermission.NONE), organization.getLogin(), operation.getTarget());
+                team.setPermission(repository(organization, operation.getTarget()), RepositoryPermission.NONE);
+                break;
+        }
+    }
+
+    private CachingTeam team(Operation operation) {
+        CachingTeam team = organizations.get(operation.getOrganization()).getTeam(operation.getTeam());
+
+        if (team == null) {
+            throw new IllegalStateException(String.format("Team \"%s\" no longer exists", operation.getTeam()));
+        }
+
+        return team;
+    }
+
+    /**
+     * @return The name of the repository, which was almost always already looked up while planning
+     */
+    private static String repository(CachingOrganization organization, String name) {
+        return organization.findRepository(name)
+            .map(RepositoryInfo::getName)
+            .orElseThrow(() -> new IllegalStateException(String.format("Repository \"%s/%s\" no longer exists", organization.getLogin(), name)));
+    }
+
+    /**
+     * Server errors and failures to get a response at all are worth retrying; anything else, such as a missing
+     * resource or a lack of permission, will fail the same way again.
+     * Requests rejected by the rate limit have already been retried by the request scheduler.
+     */
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpException) {
+                int code = ((HttpException) cause).getResponseCode();
+                return code < 0 || code >= 500;
+            }
+
+            if (cause instanceof IOException) {
+                return !(cause instanceof FileNotFoundException);
+            }
+        }
+
+        return false;
+    }
+
+    private static String padding(Enum<?>[] values) {
+        int width = Arrays.stream(values)
+            .map(Enum::name)
+            .mapToInt(String::length)
+            .max()
+            .orElse(0);
+
+        return String.format("%%-%ds", width);
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        Throwable out = e;
+
+        while (out.getCause() != null && out.getCause() != out) {
+            out = out.getCause();
+        }
+
+        return out;
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.apply;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Outcome of every operation made while applying a plan.
+ */
+@Value
+public class ApplyReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    @NonNull
+    private final List<OperationResult> results;
+
+    public long getSucceeded() {
+        return count(OperationResult.Status.SUCCEEDED);
+    }
+
+    public long getFailed() {
+        return count(OperationResult.Status.FAILED);
+    }
+
+    public long getSkipped() {
+        return count(OperationResult.Status.SKIPPED);
+    }
+
+    /**
+     * @return The number of operations which needed more than one attempt, whether or not they eventually succeeded
+     */
+    public long getRetried() {
+        return results.stream().filter(result -> result.getAttempts() > 1).count();
+    }
+
+    /**
+     * @return One exception for every team with operations which failed or were skipped, with the failures of the
+     * individual operations suppressed by it
+     */
+    public List<Throwable> failuresByTeam() {
+        Map<List<String>, List<OperationResult>> teams = new LinkedHashMap<>();
+
+        for (OperationResult result : results) {
+            if (result.getStatus() != OperationResult.Status.SUCCEEDED) {
+                List<String> team = Arrays.asList(result.getOperation().getOrganization(), result.getOperation().getTeam());
+                teams.computeIfAbsent(team, key -> new ArrayList<>()).add(result);
+            }
+        }
+
+        List<Throwable> out = new ArrayList<>();
+
+        for (Map.Entry<List<String>, List<OperationResult>> team : teams.entrySet()) {
+            IllegalStateException e = new IllegalStateException(String.format("%d change%s to team \"%s\" in organization \"%s\" could not be made",
+                team.getValue().size(), team.getValue().size() == 1 ? "" : "s", team.getKey().get(1), team.getKey().get(0)));
+
+            team.getValue().stream()
+                .map(OperationResult::getCause)
+                .filter(Objects::nonNull)
+                .forEach(e::addSuppressed);
+
+            out.add(e);
+        }
+
+        return out;
+    }
+
+    public void write(@NonNull File file) throws IOException {
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file, this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d operations succeeded, %d failed, %d skipped, %d retried", getSucceeded(), getFailed(), getSkipped(), getRetried());
+    }
+
+    private long count(OperationResult.Status status) {
+        return results.stream().filter(result -> result.getStatus() == status).count();
+    }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.apply;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Append-only, write-ahead journal of the operations made while applying a plan.
+ * <p>
+ * The operations planned for each organization are recorded before any of them are made, and each operation is
+ * recorded again when it is started and when it succeeds. Every record is forced to disk before the request it describes is made. If the
+ * process dies partway through, the journal is left behind, and the next run resumes from it instead of loading the
+ * current state and planning again. The journal is deleted once the plan has been applied in full; if any operation
+ * failed, it is kept so that the next run retries the operations which have not succeeded.
+ * <p>
+ * The journal is a file of JSON records, one per line; a partially written last line is ignored when reading it.
+ */
+@Slf4j
+public class Journal implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    public enum Type {
+
+        /**
+         * Start of the journal, recording the hash of the configuration the plan was made from
+         */
+        BEGIN,
+
+        /**
+         * Slug of a team with planned operations, so that it can be modified without listing every team again
+         */
+        TEAM,
+
+        /**
+         * An operation of the plan
+         */
+        PLANNED,
+
+        /**
+         * An operation is about to be made
+         */
+        STARTED,
+
+        /**
+         * An operation was made successfully
+         */
+        SUCCEEDED
+
+    }
+
+    @Data
+    public static class Record {
+
+        private Type type;
+
+        private String configuration;
+
+        private String organization;
+
+        private String team;
+
+        private String slug;
+
+        private Integer id;
+
+        private Operation operation;
+
+    }
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final String configuration;
+
+    private final List<Operation> operations;
+
+    private final Map<String, Map<String, String>> slugs;
+
+    private final Set<Integer> started;
+
+    private final Set<Integer> succeeded;
+
+    private Journal(File file, String configuration, List<Operation> operations, Map<String, Map<String, String>> slugs, Set<Integer> started, Set<Integer> succeeded) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.configuration = configuration;
+        this.operations = operations;
+        this.slugs = slugs;
+        this.started = started;
+        this.succeeded = succeeded;
+    }
+
+    /**
+     * Start a new journal, replacing any existing one.
+     *
+     * @param file          The journal file
+     * @param configuration Hash of the configuration the plans will be made from
+     * @return The journal
+     */
+    public static Journal start(@NonNull File file, @NonNull String configuration) throws IOException {
+        Files.deleteIfExists(file.toPath());
+
+        Journal journal = new Journal(file, configuration, new ArrayList<>(), new TreeMap<>(), new HashSet<>(), new HashSet<>());
+
+        Record begin = new Record();
+        begin.setType(Type.BEGIN);
+        begin.setConfiguration(configuration);
+        journal.append(Collections.singletonList(begin));
+
+        return journal;
+    }
+
+    /**
+     * Record planned operations, before any of them are made.
+     *
+     * @param operations The operations; they are identified by consecutive IDs, starting from the one returned
+     * @param slugs      Map of organization -&gt; team name -&gt; slug, of every team with operations
+     * @return The ID of the first operation
+     */
+    public synchronized int plan(@NonNull List<Operation> operations, @NonNull Map<String, Map<String, String>> slugs) {
+        int first = this.operations.size();
+        List<Record> records = new ArrayList<>();
+
+        slugs.forEach((organization, teams) -> teams.forEach((team, slug) -> {
+            Record record = new Record();
+            record.setType(Type.TEAM);
+            record.setOrganization(organization);
+            record.setTeam(team);
+            record.setSlug(slug);
+            records.add(record);
+        }));
+
+        for (int index = 0; index < operations.size(); index++) {
+            Record record = new Record();
+            record.setType(Type.PLANNED);
+            record.setId(first + index);
+            record.setOperation(operations.get(index));
+            records.add(record);
+        }
+
+        append(records);
+
+        this.operations.addAll(operations);
+        slugs.forEach((organization, teams) -> this.slugs.computeIfAbsent(organization, key -> new TreeMap<>()).putAll(teams));
+        return first;
+    }
+
+    /**
+     * Reopen the journal left behind by an interrupted run.
+     *
+     * @param file The journal file
+     * @return The journal, or empty if there is none
+     */
+    public static Optional<Journal> resume(@NonNull File file) throws IOException {
+        if (!file.exists()) {
+            return Optional.empty();
+        }
+
+        String configuration = null;
+        List<Operation> operations = new ArrayList<>();
+        Map<String, Map<String, String>> slugs = new TreeMap<>();
+        Set<Integer> started = new HashSet<>();
+        Set<Integer> succeeded = new HashSet<>();
+        long length = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                Record record;
+
+                try {
+                    record = MAPPER.readValue(line, Record.class);
+                } catch (IOException e) {
+                    // the process died while writing this record, so the operation it describes was never made
+                    log.warn("Ignoring incomplete record at the end of journal \"{}\"", file.getAbsolutePath());
+                    break;
+                }
+
+                length += line.getBytes(StandardCharsets.UTF_8).length + 1;
+
+                switch (record.getType()) {
+                    case BEGIN:
+                        configuration = record.getConfiguration();
+                        break;
+                    case TEAM:
+                        slugs.computeIfAbsent(record.getOrganization(), key -> new TreeMap<>()).put(record.getTeam(), record.getSlug());
+                        break;
+                    case PLANNED:
+                        operations.add(record.getOperation());
+                        break;
+                    case STARTED:
+                        started.add(record.getId());
+                        break;
+                    case SUCCEEDED:
+                    default:
+                        succeeded.add(record.getId());
+                        break;
+                }
+            }
+        }
+
+        if (configuration == null) {
+            throw new IOException(String.format("Journal \"%s\" is corrupt, it does not start with a %s record", file.getAbsolutePath(), Type.BEGIN));
+        }
+
+        // drop anything after the last complete record, so that new records aren't appended to a partial line
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            if (channel.size() < length) {
+                channel.write(ByteBuffer.wrap(new byte[]{'\n'}), channel.size());
+            } else {
+                channel.truncate(length);
+            }
+        }
+
+        return Optional.of(new Journal(file, configuration, operations, slugs, started, succeeded));
+    }
+
+    /**
+     * @return Hash of the configuration the plan was made from
+     */
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * @return Every planned operation, in order of ID
+     */
+    public synchronized List<Operation> getOperations() {
+        return new ArrayList<>(operations);
+    }
+
+    /**
+     * @return Map of organization -&gt; team name -&gt; slug, of every team with operations
+     */
+    public synchronized Map<String, Map<String, String>> getSlugs() {
+        Map<String, Map<String, String>> out = new TreeMap<>();
+        slugs.forEach((organization, teams) -> out.put(organization, new TreeMap<>(teams)));
+        return out;
+    }
+
+    /**
+     * @return The number of operations which succeeded, including those of the run being resumed
+     */
+    public synchronized int getSucceeded() {
+        return succeeded.size();
+    }
+
+    /**
+     * @return True if the operation with the given ID has already been made successfully
+     */
+    public synchronized boolean isSucceeded(int id) {
+        return succeeded.contains(id);
+    }
+
+    /**
+     * @return True if the operation with the given ID was started but never recorded as succeeding, so it may or may
+     * not have been made
+     */
+    public synchronized boolean isInDoubt(int id) {
+        return started.contains(id) && !succeeded.contains(id);
+    }
+
+    public synchronized void started(int id) {
+        started.add(id);
+        append(Collections.singletonList(record(Type.STARTED, id)));
+    }
+
+    public synchronized void succeeded(int id) {
+        succeeded.add(id);
+        append(Collections.singletonList(record(Type.SUCCEEDED, id)));
+    }
+
+    /**
+     * Delete the journal, once the plan it records has been applied in full.
+     */
+    public void complete() throws IOException {
+        close();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static Record record(Type type, int id) {
+        Record record = new Record();
+        record.setType(type);
+        record.setId(id);
+        return record;
+    }
+
+    private synchronized void append(List<Record> records) {
+        try {
+            StringBuilder builder = new StringBuilder();
+
+            for (Record record : records) {
+                builder.append(MAPPER.writeValueAsString(record)).append('\n');
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to write to journal \"%s\"", file.getAbsolutePath()), e);
+        }
+    }
+
+}
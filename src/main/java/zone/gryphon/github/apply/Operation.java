@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.apply;
+
+import lombok.NonNull;
+import lombok.Value;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+
+/**
+ * A single mutating request to make against a team.
+ */
+@Value
+public class Operation {
+
+    public enum Kind {
+
+        /**
+         * Add a user to the team, or change the role of a user already on it
+         */
+        ADD_MEMBER,
+
+        /**
+         * Remove a user from the team
+         */
+        REMOVE_MEMBER,
+
+        /**
+         * Grant the team a permission over a repository, replacing any permission it already has
+         */
+        GRANT_REPOSITORY,
+
+        /**
+         * Revoke the team's access to a repository
+         */
+        REVOKE_REPOSITORY
+
+    }
+
+    @NonNull
+    private final String organization;
+
+    @NonNull
+    private final String team;
+
+    @NonNull
+    private final Kind kind;
+
+    /**
+     * Login of the user, or name of the repository, the operation applies to
+     */
+    @NonNull
+    private final String target;
+
+    /**
+     * Role to add the user with, only set for {@link Kind#ADD_MEMBER}
+     */
+    private final TeamRole role;
+
+    /**
+     * Permission to grant, only set for {@link Kind#GRANT_REPOSITORY}
+     */
+    private final RepositoryPermission permission;
+
+    /**
+     * @return Key of the state the operation modifies; operations with the same key must be made in order
+     */
+    public String key() {
+        boolean member = kind == Kind.ADD_MEMBER || kind == Kind.REMOVE_MEMBER;
+        return String.format("%s/%s/%s:%s", organization, team, member ? "user" : "repository", target);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case ADD_MEMBER:
+                return String.format("add \"%s\" to team \"%s/%s\" as %s", target, organization, team, role);
+            case REMOVE_MEMBER:
+                return String.format("remove \"%s\" from team \"%s/%s\"", target, organization, team);
+            case GRANT_REPOSITORY:
+                return String.format("grant team \"%s/%s\" %s over \"%s\"", organization, team, permission, target);
+            case REVOKE_REPOSITORY:
+            default:
+                return String.format("revoke team \"%s/%s\" access to \"%s\"", organization, team, target);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.apply;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.kohsuke.github.HttpException;
+import zone.gryphon.github.cache.CachingTeam;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.http.RestClient;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Checks whether a single operation has already taken effect, by requesting only the membership or repository
+ * permission it modifies. Used for operations which an interrupted run started but never recorded the outcome of,
+ * so that they are not made a second time.
+ */
+@RequiredArgsConstructor
+public class OperationCheck {
+
+    /**
+     * Media type which makes Github return the team's permissions over a repository, rather than only whether it has any
+     */
+    private static final String REPOSITORY_PERMISSIONS = "application/vnd.github.v3.repository+json";
+
+    @NonNull
+    private final RestClient client;
+
+    @NonNull
+    private final RequestScheduler scheduler;
+
+    /**
+     * @param operation The operation
+     * @param team      The team the operation applies to
+     * @return True if the state the operation modifies already matches what the operation would set it to
+     */
+    public boolean isApplied(@NonNull Operation operation, @NonNull CachingTeam team) {
+        long id = team.getId();
+
+        switch (operation.getKind()) {
+            case ADD_MEMBER:
+            case REMOVE_MEMBER: {
+                JsonNode membership = get(String.format("/teams/%d/memberships/%s", id, operation.getTarget()), "application/vnd.github.v3+json");
+                TeamRole role = membership == null ? TeamRole.NONE : "maintainer".equals(membership.path("role").asText()) ? TeamRole.MAINTAINER : TeamRole.MEMBER;
+                return role == (operation.getKind() == Operation.Kind.ADD_MEMBER ? operation.getRole() : TeamRole.NONE);
+            }
+            case GRANT_REPOSITORY:
+            case REVOKE_REPOSITORY:
+            default: {
+                JsonNode repository = get(String.format("/teams/%d/repos/%s/%s", id, operation.getOrganization(), operation.getTarget()), REPOSITORY_PERMISSIONS);
+                RepositoryPermission permission = repository == null ? RepositoryPermission.NONE : permissionOf(repository.path("permissions"));
+                return permission == (operation.getKind() == Operation.Kind.GRANT_REPOSITORY ? operation.getPermission() : RepositoryPermission.NONE);
+            }
+        }
+    }
+
+    /**
+     * @return The body of the resource, or null if it does not exist
+     */
+    private JsonNode get(String path, String accept) {
+        return scheduler.read(() -> {
+            try {
+                return client.get(client.url(path), accept).getBody();
+            } catch (HttpException e) {
+                if (e.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                    return null;
+                }
+
+                throw e;
+            }
+        });
+    }
+
+    private static RepositoryPermission permissionOf(JsonNode permissions) {
+        if (permissions.path("admin").asBoolean()) {
+            return RepositoryPermission.ADMIN;
+        }
+
+        if (permissions.path("push").asBoolean()) {
+            return RepositoryPermission.WRITE;
+        }
+
+        if (permissions.path("pull").asBoolean()) {
+            return RepositoryPermission.READ;
+        }
+
+        return RepositoryPermission.NONE;
+    }
+
+}
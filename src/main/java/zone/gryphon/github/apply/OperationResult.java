@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.apply;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Outcome of a single {@link Operation}.
+ */
+@Value
+public class OperationResult {
+
+    public enum Status {
+
+        /**
+         * The operation was made successfully
+         */
+        SUCCEEDED,
+
+        /**
+         * The operation failed, on its last attempt
+         */
+        FAILED,
+
+        /**
+         * The operation was not attempted, because an earlier operation on the same state failed
+         */
+        SKIPPED
+
+    }
+
+    @NonNull
+    private final Operation operation;
+
+    @NonNull
+    private final Status status;
+
+    /**
+     * Number of times the operation was attempted
+     */
+    private final int attempts;
+
+    /**
+     * Why the operation failed or was skipped, null if it succeeded
+     */
+    private final String error;
+
+    /**
+     * The exception which failed the operation, null if it did not fail
+     */
+    @JsonIgnore
+    private final Throwable cause;
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing how much work the caches have saved over the course of a run.
+ */
+public class CacheStatistics {
+
+    private final AtomicLong pagesFetched = new AtomicLong();
+
+    private final AtomicLong itemsFetched = new AtomicLong();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong fetchesAvoided = new AtomicLong();
+
+    void pageFetched(int items) {
+        pagesFetched.incrementAndGet();
+        itemsFetched.addAndGet(items);
+    }
+
+    void cacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    void fetchAvoided() {
+        fetchesAvoided.incrementAndGet();
+    }
+
+    /**
+     * @return The number of list pages which were requested from the Github API
+     */
+    public long getPagesFetched() {
+        return pagesFetched.get();
+    }
+
+    /**
+     * @return The total number of items contained in the pages requested from the Github API
+     */
+    public long getItemsFetched() {
+        return itemsFetched.get();
+    }
+
+    /**
+     * @return The number of lookups which were answered from an already loaded listing
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return The number of users and repositories which were changed without fetching them in full first
+     */
+    public long getFetchesAvoided() {
+        return fetchesAvoided.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d list pages fetched (%d items), %d lookups served from cache, %d full object fetches avoided",
+            getPagesFetched(), getItemsFetched(), getCacheHits(), getFetchesAvoided());
+    }
+}
@@ -15,93 +15,192 @@
 
 package zone.gryphon.github.cache;
 
+import io.micrometer.core.instrument.Metrics;
 import lombok.NonNull;
-import org.kohsuke.github.GHOrganization;
-import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GHTeam;
-import zone.gryphon.github.utilities.IOUtilities;
+import zone.gryphon.github.http.RequestScheduler;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
-
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Organization level cache of repositories and teams.
+ * <p>
+ * Listings are loaded lazily through a {@link StateLoader} the first time they are needed,
+ * and are safe to share between threads.
+ */
 public class CachingOrganization {
 
-    private final GHOrganization organization;
+    /**
+     * Name of the timer recording how long it takes to load state through a {@link StateLoader}
+     */
+    static final String LOAD_TIMER = "automation.state.load";
+
+    private final String login;
+
+    private final StateLoader loader;
+
+    private final CacheStatistics statistics;
+
+    private final RequestScheduler scheduler;
+
+    private final Object teamsLock = new Object();
+
+    private final Object repositoriesLock = new Object();
 
-    private final Map<String, CachingTeam> teams = new HashMap<>();
+    private volatile Map<String, CachingTeam> teams;
 
-    private final Map<String, GHRepository> repositories = new HashMap<>();
+    /**
+     * Teams whose slugs were known ahead of time, which can be used before every team has been listed
+     */
+    private final Map<String, CachingTeam> knownTeams = new ConcurrentHashMap<>();
 
-    public CachingOrganization(@NonNull GHOrganization organization) {
-        this.organization = organization;
+    /**
+     * Index of repository name -&gt; repository, for every repository in the organization
+     */
+    private volatile Map<String, RepositoryInfo> repositories;
+
+    /**
+     * Repositories which were looked up individually, before the index was loaded.
+     * Lookups are memoized as futures, so that the request is made outside of the map's locks.
+     */
+    private final Map<String, CompletableFuture<Optional<RepositoryInfo>>> lookups = new ConcurrentHashMap<>();
+
+    public CachingOrganization(@NonNull String login, @NonNull StateLoader loader, @NonNull CacheStatistics statistics, @NonNull RequestScheduler scheduler) {
+        this.login = login;
+        this.loader = loader;
+        this.statistics = statistics;
+        this.scheduler = scheduler;
     }
 
     public String getLogin() {
-        return IOUtilities.unwrap(organization::getLogin);
+        return login;
     }
 
-    public CachingTeam getTeam(@NonNull String name) {
-        return getRawTeams().get(name);
+    /**
+     * @return The number of requests made for this organization so far
+     */
+    public long getRequests() {
+        return scheduler.getRequests();
     }
 
-    public GHRepository getRepository(@NonNull String name) {
-        return getRawRepositories().get(name);
+    public CachingTeam getTeam(@NonNull String name) {
+        CachingTeam known = teams == null ? knownTeams.get(name) : null;
+        return known != null ? known : getRawTeams().get(name);
     }
 
-    public Set<String> getRepositoryNames() {
-        Set<String> set = getRawRepositories()
-            .keySet()
-            .stream()
-            .filter(Objects::nonNull)
-            .collect(Collectors.toCollection(TreeSet::new));
+    /**
+     * Register a team whose slug is already known, so that {@link #getTeam(String)} can return it without listing
+     * every team in the organization.
+     *
+     * @param name The name of the team
+     * @param slug The slug of the team
+     */
+    public void addTeam(@NonNull String name, @NonNull String slug) {
+        knownTeams.computeIfAbsent(name, key -> new CachingTeam(new TeamState(name, slug, null, null), loader));
+    }
 
-        return Collections.unmodifiableSet(set);
+    public Collection<CachingTeam> getTeams() {
+        return getRawTeams().values();
     }
 
-    private Map<String, CachingTeam> getRawTeams() {
-        ensureTeamsAreLoaded();
-        return teams;
+    /**
+     * Look up a single repository. If the index of every repository has not been loaded, the repository is fetched by
+     * name instead, which is much cheaper than listing a large organization when only a few repositories are needed.
+     *
+     * @param name The name of the repository
+     * @return The repository, or empty if it does not exist
+     */
+    public Optional<RepositoryInfo> findRepository(@NonNull String name) {
+        Map<String, RepositoryInfo> loaded = repositories;
+
+        if (loaded != null) {
+            statistics.cacheHit();
+            return Optional.ofNullable(loaded.get(name));
+        }
+
+        CompletableFuture<Optional<RepositoryInfo>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<RepositoryInfo>> existing = lookups.putIfAbsent(name, lookup);
+
+        if (existing != null) {
+            return existing.join();
+        }
+
+        try {
+            lookup.complete(Metrics.timer(LOAD_TIMER, "kind", "repository").record(() -> loader.findRepository(name)));
+        } catch (RuntimeException e) {
+            // failures aren't memoized, so that the next lookup tries again
+            lookups.remove(name, lookup);
+            lookup.completeExceptionally(e);
+            throw e;
+        }
+
+        return lookup.join();
     }
 
-    private Map<String, GHRepository> getRawRepositories() {
-        ensureRepositoriesAreLoaded();
-        return repositories;
+    public Set<String> getRepositoryNames() {
+        return getRepositories().keySet();
     }
 
-    private void ensureRepositoriesAreLoaded() {
+    /**
+     * @return Unmodifiable index of repository name -&gt; repository, for every repository in the organization, in name order
+     */
+    public Map<String, RepositoryInfo> getRepositories() {
+        Map<String, RepositoryInfo> loaded = repositories;
 
-        if (!repositories.isEmpty()) {
-            return;
+        if (loaded != null) {
+            statistics.cacheHit();
+            return loaded;
         }
 
-        for (GHRepository repository : IOUtilities.unwrap(organization::listRepositories)) {
-            this.repositories.put(repository.getName(), repository);
-        }
+        synchronized (repositoriesLock) {
 
-        // the organization has no repositories, add a sentinel value so we don't try to load them again
-        if (repositories.isEmpty()) {
-            repositories.put(null, null);
+            // another thread may have loaded the repositories while we were waiting for the lock
+            if (repositories != null) {
+                statistics.cacheHit();
+                return repositories;
+            }
+
+            // pages are added to the index as they arrive, so only the few fields of each repository are ever held
+            Map<String, RepositoryInfo> out = new TreeMap<>();
+            Metrics.timer(LOAD_TIMER, "kind", "repositories").record(() -> loader.listRepositories(page -> page.forEach(repository -> out.put(repository.getName(), repository))));
+
+            repositories = Collections.unmodifiableMap(out);
+            lookups.clear();
+            return repositories;
         }
     }
 
-    private void ensureTeamsAreLoaded() {
+    private Map<String, CachingTeam> getRawTeams() {
+        Map<String, CachingTeam> loaded = teams;
 
-        if (!teams.isEmpty()) {
-            return;
+        if (loaded != null) {
+            statistics.cacheHit();
+            return loaded;
         }
 
-        for (GHTeam team : IOUtilities.unwrap(organization::listTeams)) {
-            this.teams.put(team.getName(), new CachingTeam(team));
-        }
+        synchronized (teamsLock) {
+
+            // another thread may have loaded the teams while we were waiting for the lock
+            if (teams != null) {
+                statistics.cacheHit();
+                return teams;
+            }
+
+            Map<String, CachingTeam> out = new HashMap<>();
+
+            for (TeamState team : Metrics.timer(LOAD_TIMER, "kind", "teams").record(loader::loadTeams)) {
+                out.put(team.getName(), new CachingTeam(team, loader));
+            }
 
-        // the organization has no teams, add a sentinel value so we don't try to load them again
-        if (teams.isEmpty()) {
-            teams.put(null, null);
+            teams = Collections.unmodifiableMap(out);
+            return teams;
         }
     }
 }
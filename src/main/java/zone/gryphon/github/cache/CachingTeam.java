@@ -15,50 +15,199 @@
 
 package zone.gryphon.github.cache;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import org.kohsuke.github.GHOrganization;
-import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GHTeam;
-import org.kohsuke.github.GHUser;
-import zone.gryphon.github.utilities.IOUtilities;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @RequiredArgsConstructor
 public class CachingTeam {
 
     @NonNull
-    private final GHTeam team;
+    private final TeamState state;
+
+    @NonNull
+    private final StateLoader loader;
+
+    private Map<String, RepositoryPermission> repositories;
+
+    private Map<String, TeamRole> members;
 
     public String getName() {
-        return IOUtilities.unwrap(team::getName);
+        return state.getName();
     }
 
-    public void add(GHRepository r, GHOrganization.Permission permission) {
-        IOUtilities.unwrap(() -> {
-            team.add(r, permission);
-            return null;
-        });
+    public String getSlug() {
+        return state.getSlug();
     }
 
-    public void remove(GHRepository repo) {
-        IOUtilities.unwrap(() -> {
-            team.remove(repo);
-            return null;
-        });
+    /**
+     * @return The ID of the team, which may require a request to look up
+     */
+    public long getId() {
+        return loader.getTeamId(state);
+    }
+
+    /**
+     * Load the current members and repository permissions of the team, if they have not been already.
+     */
+    public void load() {
+        load(true, true);
+    }
+
+    /**
+     * Load some aspects of the team, if they have not been already.
+     *
+     * @param members      Whether to load the current members of the team
+     * @param repositories Whether to load the current repository permissions of the team
+     */
+    public void load(boolean members, boolean repositories) {
+        if (repositories) {
+            getRawRepositories();
+        }
+
+        if (members) {
+            getRawMembers();
+        }
+    }
+
+    /**
+     * @return The state of the team as currently known; members and repositories are null if they have not been loaded
+     */
+    public synchronized TeamState toState() {
+        return new TeamState(
+            state.getName(),
+            state.getSlug(),
+            members == null ? null : new HashMap<>(members),
+            repositories == null ? null : new HashMap<>(repositories));
+    }
+
+    /**
+     * Get the permission this team currently has over the given repository.
+     *
+     * @param repository The name of the repository
+     * @return The current permission, {@link RepositoryPermission#NONE} if the team has no access
+     */
+    public RepositoryPermission getPermission(@NonNull String repository) {
+        return getRawRepositories().getOrDefault(repository, RepositoryPermission.NONE);
+    }
+
+    /**
+     * @return Unmodifiable view of repository name -&gt; permission, for every repository the team currently has access to
+     */
+    public Map<String, RepositoryPermission> getPermissions() {
+        return Collections.unmodifiableMap(getRawRepositories());
+    }
+
+    /**
+     * Get the role the given user currently has on this team.
+     *
+     * @param login The login of the user
+     * @return The current role, {@link TeamRole#NONE} if the user is not on the team
+     */
+    public TeamRole getRole(@NonNull String login) {
+        return getRawMembers().getOrDefault(normalize(login), TeamRole.NONE);
     }
 
-    public void remove(GHUser user) {
-        IOUtilities.unwrap(() -> {
-            team.remove(user);
-            return null;
+    /**
+     * Change the role of a user on this team.
+     *
+     * @param login The login of the user
+     * @param role  The new role, {@link TeamRole#NONE} to remove the user from the team
+     */
+    public void setRole(@NonNull String login, @NonNull TeamRole role) {
+        mutation(role == TeamRole.NONE ? "remove_member" : "add_member").record(() -> loader.setRole(state, login, role));
+
+        updateMembers(members -> {
+            if (role == TeamRole.NONE) {
+                members.remove(normalize(login));
+            } else {
+                members.put(normalize(login), role);
+            }
         });
     }
 
-    public void add(GHUser user, GHTeam.Role role) {
-        IOUtilities.unwrap(() -> {
-            team.add(user, role);
-            return null;
+    /**
+     * Change the permission this team has over a repository.
+     *
+     * @param repository The name of the repository
+     * @param permission The new permission, {@link RepositoryPermission#NONE} to remove the team's access
+     */
+    public void setPermission(@NonNull String repository, @NonNull RepositoryPermission permission) {
+        mutation(permission == RepositoryPermission.NONE ? "remove_repository" : "add_repository").record(() -> loader.setPermission(state, repository, permission));
+
+        updateRepositories(repositories -> {
+            if (permission == RepositoryPermission.NONE) {
+                repositories.remove(repository);
+            } else {
+                repositories.put(repository, permission);
+            }
         });
     }
 
+    private synchronized Map<String, RepositoryPermission> getRawRepositories() {
+        if (repositories == null) {
+            Map<String, RepositoryPermission> loaded = state.getRepositories();
+            repositories = new ConcurrentHashMap<>(loaded == null ? load("repositories", () -> loader.loadRepositories(state)) : loaded);
+        }
+
+        return repositories;
+    }
+
+    private synchronized Map<String, TeamRole> getRawMembers() {
+        if (members == null) {
+            Map<String, TeamRole> loaded = state.getMembers();
+            members = new ConcurrentHashMap<>(loaded == null ? load("members", () -> loader.loadMembers(state)) : loaded);
+        }
+
+        return members;
+    }
+
+    /**
+     * Apply a change to the known repository permissions. If they have not been loaded there is nothing to keep up to
+     * date, and loading them just to record the change would be wasted work.
+     */
+    private synchronized void updateRepositories(Consumer<Map<String, RepositoryPermission>> update) {
+        if (repositories != null) {
+            update.accept(repositories);
+        }
+    }
+
+    /**
+     * Apply a change to the known members, if they have been loaded.
+     */
+    private synchronized void updateMembers(Consumer<Map<String, TeamRole>> update) {
+        if (members != null) {
+            update.accept(members);
+        }
+    }
+
+    private static <T> T load(String kind, Supplier<T> loader) {
+        return Metrics.timer(CachingOrganization.LOAD_TIMER, "kind", kind).record(loader);
+    }
+
+    private static Timer mutation(String operation) {
+        return Metrics.timer("automation.team.mutation", "operation", operation);
+    }
+
+    /**
+     * Logins are case insensitive, so they are always compared in lower case.
+     *
+     * @param login The login
+     * @return The normalized login
+     */
+    static String normalize(String login) {
+        return login.toLowerCase(Locale.ROOT);
+    }
+
 }
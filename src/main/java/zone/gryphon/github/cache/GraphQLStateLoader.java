@@ -0,0 +1,293 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.NonNull;
+import zone.gryphon.github.http.GraphQLClient;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.http.RestClient;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.RepositoryVisibility;
+import zone.gryphon.github.model.TeamRole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link StateLoader} which uses the GraphQL API.
+ * <p>
+ * Teams are loaded together with their members and repository permissions, so the access graph of a whole
+ * organization is fetched in a handful of queries. Only teams with more than a page of members or repositories
+ * need follow up queries.
+ */
+public class GraphQLStateLoader implements StateLoader {
+
+    private static final String PAGE_INFO = "pageInfo { hasNextPage endCursor } ";
+
+    private static final String MEMBERS = "members(first: 100, after: $members, membership: IMMEDIATE) { " + PAGE_INFO + "edges { role node { login } } } ";
+
+    private static final String REPOSITORIES = "repositories(first: 100, after: $repositories) { " + PAGE_INFO + "edges { permission node { name } } } ";
+
+    // a repository can have at most 20 topics
+    private static final String REPOSITORY_FIELDS = "name databaseId isArchived isPrivate visibility repositoryTopics(first: 20) { nodes { topic { name } } } ";
+
+    private static final String REPOSITORIES_QUERY = "" +
+        "query($login: String!, $cursor: String) { " +
+        "  organization(login: $login) { " +
+        "    repositories(first: 100, after: $cursor) { " + PAGE_INFO + "nodes { " + REPOSITORY_FIELDS + "} } " +
+        "  } " +
+        "}";
+
+    private static final String REPOSITORY_QUERY = "" +
+        "query($login: String!, $name: String!) { " +
+        "  repository(owner: $login, name: $name) { " + REPOSITORY_FIELDS + "} " +
+        "}";
+
+    private static final String TEAMS_QUERY = "" +
+        "query($login: String!, $cursor: String, $members: String, $repositories: String) { " +
+        "  organization(login: $login) { " +
+        "    teams(first: 25, after: $cursor) { " + PAGE_INFO +
+        "      nodes { name slug databaseId " + MEMBERS + REPOSITORIES + "} " +
+        "    } " +
+        "  } " +
+        "}";
+
+    private static final String TEAM_ID_QUERY = "" +
+        "query($login: String!, $slug: String!) { " +
+        "  organization(login: $login) { team(slug: $slug) { databaseId } } " +
+        "}";
+
+    private static final String TEAM_MEMBERS_QUERY = "" +
+        "query($login: String!, $slug: String!, $members: String) { " +
+        "  organization(login: $login) { team(slug: $slug) { " + MEMBERS + "} } " +
+        "}";
+
+    private static final String TEAM_REPOSITORIES_QUERY = "" +
+        "query($login: String!, $slug: String!, $repositories: String) { " +
+        "  organization(login: $login) { team(slug: $slug) { " + REPOSITORIES + "} } " +
+        "}";
+
+    private final String organization;
+
+    private final GraphQLClient client;
+
+    private final RequestScheduler scheduler;
+
+    private final CacheStatistics statistics;
+
+    private final TeamWriter writer;
+
+    /**
+     * Team slug -&gt; ID, for every team which has been listed or looked up
+     */
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+
+    /**
+     * @param organization The login of the organization
+     * @param client       Client to query the state of the organization with
+     * @param rest         Client to change the state of the organization with, which the GraphQL API does not support
+     * @param scheduler    Scheduler to make requests through
+     * @param statistics   Statistics to record fetched pages in
+     */
+    public GraphQLStateLoader(@NonNull String organization, @NonNull GraphQLClient client, @NonNull RestClient rest, @NonNull RequestScheduler scheduler, @NonNull CacheStatistics statistics) {
+        this.organization = organization;
+        this.client = client;
+        this.scheduler = scheduler;
+        this.statistics = statistics;
+        this.writer = new TeamWriter(organization, rest, scheduler, statistics);
+    }
+
+    @Override
+    public void listRepositories(@NonNull Consumer<List<RepositoryInfo>> consumer) {
+        paginate(REPOSITORIES_QUERY, "cursor", new HashMap<>(), data -> data.path("organization").path("repositories"), repositories -> {
+            List<RepositoryInfo> page = new ArrayList<>(repositories.path("nodes").size());
+            repositories.path("nodes").forEach(node -> page.add(repositoryOf(node)));
+            consumer.accept(page);
+        });
+    }
+
+    @Override
+    public Optional<RepositoryInfo> findRepository(@NonNull String name) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("login", organization);
+        variables.put("name", name);
+
+        // a repository which does not exist is null, and fails with a NOT_FOUND error
+        JsonNode repository = scheduler.read(() -> client.query(REPOSITORY_QUERY, variables, Collections.singleton("NOT_FOUND"))).path("repository");
+        return repository.isObject() ? Optional.of(repositoryOf(repository)) : Optional.empty();
+    }
+
+    @Override
+    public List<TeamState> loadTeams() {
+        List<TeamState> out = new ArrayList<>();
+
+        paginate(TEAMS_QUERY, "cursor", new HashMap<>(), data -> data.path("organization").path("teams"), teams -> {
+            for (JsonNode node : teams.path("nodes")) {
+                String slug = node.path("slug").asText();
+
+                Map<String, TeamRole> members = new HashMap<>();
+                readMembers(node.path("members"), members);
+                remaining(TEAM_MEMBERS_QUERY, "members", slug, node.path("members"), connection -> readMembers(connection, members));
+
+                Map<String, RepositoryPermission> repositories = new HashMap<>();
+                readRepositories(node.path("repositories"), repositories);
+                remaining(TEAM_REPOSITORIES_QUERY, "repositories", slug, node.path("repositories"), connection -> readRepositories(connection, repositories));
+
+                ids.put(slug, node.path("databaseId").asLong());
+                out.add(new TeamState(node.path("name").asText(), slug, members, repositories));
+            }
+        });
+
+        return out;
+    }
+
+    @Override
+    public Map<String, TeamRole> loadMembers(@NonNull TeamState team) {
+        Map<String, TeamRole> out = new HashMap<>();
+        remaining(TEAM_MEMBERS_QUERY, "members", team.getSlug(), null, connection -> readMembers(connection, out));
+        return out;
+    }
+
+    @Override
+    public Map<String, RepositoryPermission> loadRepositories(@NonNull TeamState team) {
+        Map<String, RepositoryPermission> out = new HashMap<>();
+        remaining(TEAM_REPOSITORIES_QUERY, "repositories", team.getSlug(), null, connection -> readRepositories(connection, out));
+        return out;
+    }
+
+    @Override
+    public long getTeamId(@NonNull TeamState team) {
+        return ids.computeIfAbsent(team.getSlug(), slug -> {
+            Map<String, Object> variables = new HashMap<>();
+            variables.put("login", organization);
+            variables.put("slug", slug);
+
+            JsonNode node = scheduler.read(() -> client.query(TEAM_ID_QUERY, variables)).path("organization").path("team");
+
+            if (!node.isObject()) {
+                throw new IllegalStateException(String.format("Team \"%s\" does not exist in organization \"%s\"", slug, organization));
+            }
+
+            return node.path("databaseId").asLong();
+        });
+    }
+
+    @Override
+    public void setRole(@NonNull TeamState team, @NonNull String login, @NonNull TeamRole role) {
+        writer.setRole(getTeamId(team), login, role);
+    }
+
+    @Override
+    public void setPermission(@NonNull TeamState team, @NonNull String repository, @NonNull RepositoryPermission permission) {
+        writer.setPermission(getTeamId(team), repository, permission);
+    }
+
+    /**
+     * Fetch the pages of a team's nested connection which follow the given one.
+     *
+     * @param first The page which has already been fetched, or null to start from the beginning
+     */
+    private void remaining(String query, String connection, String slug, JsonNode first, Consumer<JsonNode> consumer) {
+        if (first != null && !first.path("pageInfo").path("hasNextPage").asBoolean()) {
+            return;
+        }
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("slug", slug);
+
+        if (first != null) {
+            variables.put(connection, first.path("pageInfo").path("endCursor").asText());
+        }
+
+        paginate(query, connection, variables, data -> data.path("organization").path("team").path(connection), consumer);
+    }
+
+    private void paginate(String query, String cursor, Map<String, Object> variables, Function<JsonNode, JsonNode> connection, Consumer<JsonNode> consumer) {
+        variables.put("login", organization);
+
+        while (true) {
+            JsonNode page = connection.apply(scheduler.read(() -> client.query(query, variables)));
+
+            statistics.pageFetched(page.has("edges") ? page.path("edges").size() : page.path("nodes").size());
+            consumer.accept(page);
+
+            if (!page.path("pageInfo").path("hasNextPage").asBoolean()) {
+                return;
+            }
+
+            variables.put(cursor, page.path("pageInfo").path("endCursor").asText());
+        }
+    }
+
+    private static RepositoryInfo repositoryOf(JsonNode node) {
+        return new RepositoryInfo(
+            node.path("name").asText(),
+            node.path("databaseId").asLong(),
+            node.path("isArchived").asBoolean(),
+            RepositoryVisibility.of(node.path("visibility").asText(null), node.path("isPrivate").asBoolean()),
+            topicsOf(node.path("repositoryTopics").path("nodes")));
+    }
+
+    private static Set<String> topicsOf(JsonNode nodes) {
+        if (nodes.size() == 0) {
+            return Collections.emptySet();
+        }
+
+        Set<String> out = new HashSet<>(nodes.size());
+        nodes.forEach(node -> out.add(node.path("topic").path("name").asText().toLowerCase(Locale.ROOT)));
+        return out;
+    }
+
+    private static void readMembers(JsonNode connection, Map<String, TeamRole> out) {
+        for (JsonNode edge : connection.path("edges")) {
+            TeamRole role = "MAINTAINER".equals(edge.path("role").asText()) ? TeamRole.MAINTAINER : TeamRole.MEMBER;
+            out.put(CachingTeam.normalize(edge.path("node").path("login").asText()), role);
+        }
+    }
+
+    private static void readRepositories(JsonNode connection, Map<String, RepositoryPermission> out) {
+        for (JsonNode edge : connection.path("edges")) {
+            out.put(edge.path("node").path("name").asText(), map(edge.path("permission").asText()));
+        }
+    }
+
+    // mirrors how the REST API reports these permissions through the admin/push/pull flags
+    private static RepositoryPermission map(String permission) {
+        switch (permission) {
+            case "ADMIN":
+                return RepositoryPermission.ADMIN;
+            case "MAINTAIN":
+            case "WRITE":
+                return RepositoryPermission.WRITE;
+            case "TRIAGE":
+            case "READ":
+                return RepositoryPermission.READ;
+            default:
+                return RepositoryPermission.NONE;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import zone.gryphon.github.http.RequestScheduler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Run-scoped registry of {@link CachingOrganization}s, so that every team in an organization shares the same
+ * repository and team listings instead of loading them again.
+ */
+@RequiredArgsConstructor
+public class OrganizationRegistry {
+
+    @NonNull
+    private final RequestScheduler scheduler;
+
+    @NonNull
+    private final StateLoader.Factory loaders;
+
+    @NonNull
+    private final CacheStatistics statistics;
+
+    private final Map<String, CachingOrganization> organizations = new ConcurrentHashMap<>();
+
+    public CachingOrganization get(@NonNull String name) {
+        return organizations.computeIfAbsent(name, key -> {
+            RequestScheduler account = scheduler.account();
+            return new CachingOrganization(key, loaders.create(key, account), statistics, account);
+        });
+    }
+
+    /**
+     * @return Every organization which has been requested from this registry so far
+     */
+    public Collection<CachingOrganization> getOrganizations() {
+        return Collections.unmodifiableCollection(organizations.values());
+    }
+
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+}
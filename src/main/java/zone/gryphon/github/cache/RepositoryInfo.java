@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import lombok.NonNull;
+import lombok.Value;
+import zone.gryphon.github.model.RepositoryVisibility;
+
+import java.util.Set;
+
+/**
+ * The few attributes of a repository which are needed to plan changes, kept instead of the full repository so that
+ * the index of a large organization stays small.
+ */
+@Value
+public class RepositoryInfo {
+
+    @NonNull
+    private final String name;
+
+    /**
+     * ID of the repository, or 0 if not known
+     */
+    private final long id;
+
+    private final boolean archived;
+
+    /**
+     * Visibility of the repository, or null if not known
+     */
+    private final RepositoryVisibility visibility;
+
+    /**
+     * Topics of the repository, in lower case; empty if it has none, or if they are not known
+     */
+    @NonNull
+    private final Set<String> topics;
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.NonNull;
+import org.kohsuke.github.HttpException;
+import zone.gryphon.github.http.PageFetcher;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.http.RestClient;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.RepositoryVisibility;
+import zone.gryphon.github.model.TeamRole;
+import zone.gryphon.github.utilities.WorkerPool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link StateLoader} which uses the REST API.
+ * <p>
+ * Team members and repositories are listed separately for each team, on demand.
+ * Listings are read directly rather than through the Github library, so only the few fields which are needed are kept,
+ * and the IDs of the listed teams are kept so that no additional requests are needed to modify them.
+ * Once the first page of a listing shows how many pages there are, the rest are fetched concurrently.
+ */
+public class RestStateLoader implements StateLoader {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final String organization;
+
+    private final RestClient client;
+
+    private final RequestScheduler scheduler;
+
+    private final CacheStatistics statistics;
+
+    private final TeamWriter writer;
+
+    private final PageFetcher fetcher;
+
+    /**
+     * Team slug -&gt; ID, for every team which has been listed or looked up
+     */
+    private final Map<String, Long> ids = new ConcurrentHashMap<>();
+
+    /**
+     * @param organization    The login of the organization
+     * @param client          Client to make requests with
+     * @param scheduler       Scheduler to make requests through
+     * @param statistics      Statistics to record fetched pages in
+     * @param pages           Pool to fetch the pages of listings on, shared by every loader
+     * @param pagesPerListing Maximum number of pages of a single listing to fetch concurrently
+     */
+    public RestStateLoader(@NonNull String organization, @NonNull RestClient client, @NonNull RequestScheduler scheduler, @NonNull CacheStatistics statistics, @NonNull WorkerPool pages, int pagesPerListing) {
+        this.organization = organization;
+        this.client = client;
+        this.scheduler = scheduler;
+        this.statistics = statistics;
+        this.writer = new TeamWriter(organization, client, scheduler, statistics);
+        this.fetcher = new PageFetcher(client, scheduler, pages, pagesPerListing);
+    }
+
+    @Override
+    public void listRepositories(@NonNull Consumer<List<RepositoryInfo>> consumer) {
+        pages(String.format("/orgs/%s/repos?per_page=%d", organization, PAGE_SIZE), body -> {
+            List<RepositoryInfo> page = new ArrayList<>(body.size());
+            body.forEach(repository -> page.add(repositoryOf(repository)));
+            consumer.accept(page);
+        });
+    }
+
+    @Override
+    public Optional<RepositoryInfo> findRepository(@NonNull String name) {
+        return scheduler.read(() -> {
+            try {
+                return Optional.of(repositoryOf(client.get(client.url(String.format("/repos/%s/%s", organization, name))).getBody()));
+            } catch (HttpException e) {
+                if (e.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                    return Optional.empty();
+                }
+
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public List<TeamState> loadTeams() {
+        List<TeamState> out = new ArrayList<>();
+
+        pages(String.format("/orgs/%s/teams?per_page=%d", organization, PAGE_SIZE), body -> {
+            for (JsonNode team : body) {
+                ids.put(team.path("slug").asText(), team.path("id").asLong());
+                out.add(new TeamState(team.path("name").asText(), team.path("slug").asText(), null, null));
+            }
+        });
+
+        return out;
+    }
+
+    @Override
+    public Map<String, TeamRole> loadMembers(@NonNull TeamState team) {
+        long id = getTeamId(team);
+        Map<String, TeamRole> out = new HashMap<>();
+
+        // note: the listing includes the members of child teams, who already have the team's access and so need no change
+        pages(String.format("/teams/%d/members?per_page=%d", id, PAGE_SIZE), body -> {
+            for (JsonNode user : body) {
+                out.put(CachingTeam.normalize(user.path("login").asText()), TeamRole.MEMBER);
+            }
+        });
+
+        // members are listed without their roles, so maintainers are listed separately
+        pages(String.format("/teams/%d/members?role=maintainer&per_page=%d", id, PAGE_SIZE), body -> {
+            for (JsonNode user : body) {
+                out.put(CachingTeam.normalize(user.path("login").asText()), TeamRole.MAINTAINER);
+            }
+        });
+
+        return out;
+    }
+
+    @Override
+    public Map<String, RepositoryPermission> loadRepositories(@NonNull TeamState team) {
+        Map<String, RepositoryPermission> out = new HashMap<>();
+
+        // when listing the repositories of a team, the permissions reported on each repository are those of the team
+        pages(String.format("/teams/%d/repos?per_page=%d", getTeamId(team), PAGE_SIZE), body -> {
+            for (JsonNode repository : body) {
+                out.put(repository.path("name").asText(), permissionOf(repository.path("permissions")));
+            }
+        });
+
+        return out;
+    }
+
+    @Override
+    public long getTeamId(@NonNull TeamState team) {
+        return ids.computeIfAbsent(team.getSlug(), slug ->
+            scheduler.read(() -> client.get(client.url(String.format("/orgs/%s/teams/%s", organization, slug))).getBody().path("id").asLong()));
+    }
+
+    @Override
+    public void setRole(@NonNull TeamState team, @NonNull String login, @NonNull TeamRole role) {
+        writer.setRole(getTeamId(team), login, role);
+    }
+
+    @Override
+    public void setPermission(@NonNull TeamState team, @NonNull String repository, @NonNull RepositoryPermission permission) {
+        writer.setPermission(getTeamId(team), repository, permission);
+    }
+
+    /**
+     * Fetch every page of a listing with the REST client, passing the body of each page to the consumer as it arrives.
+     * Pages are passed one at a time, but not necessarily in order.
+     */
+    private void pages(String path, Consumer<JsonNode> consumer) {
+        URL url;
+
+        // building the URL makes no request, so it isn't scheduled; only the page fetches are
+        try {
+            url = client.url(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        fetcher.fetch(url, body -> {
+            statistics.pageFetched(body.size());
+            consumer.accept(body);
+        });
+    }
+
+    private static RepositoryInfo repositoryOf(JsonNode repository) {
+        return new RepositoryInfo(
+            repository.path("name").asText(),
+            repository.path("id").asLong(),
+            repository.path("archived").asBoolean(),
+            RepositoryVisibility.of(repository.path("visibility").asText(null), repository.path("private").asBoolean()),
+            topicsOf(repository.path("topics")));
+    }
+
+    private static Set<String> topicsOf(JsonNode topics) {
+        if (topics.size() == 0) {
+            return Collections.emptySet();
+        }
+
+        Set<String> out = new HashSet<>(topics.size());
+        topics.forEach(topic -> out.add(topic.asText().toLowerCase(Locale.ROOT)));
+        return out;
+    }
+
+    private static RepositoryPermission permissionOf(JsonNode permissions) {
+        if (permissions.path("admin").asBoolean()) {
+            return RepositoryPermission.ADMIN;
+        }
+
+        if (permissions.path("push").asBoolean()) {
+            return RepositoryPermission.WRITE;
+        }
+
+        if (permissions.path("pull").asBoolean()) {
+            return RepositoryPermission.READ;
+        }
+
+        return RepositoryPermission.NONE;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Source of the current state of a single organization, and the means to change it.
+ * <p>
+ * Implementations are responsible only for making requests; caching and thread safety are handled by
+ * {@link CachingOrganization} and {@link CachingTeam}. Changes only need the logins, names and IDs held by the
+ * listings, so users and repositories are never fetched in full.
+ */
+public interface StateLoader {
+
+    /**
+     * List every repository in the organization, passing each page to the consumer as soon as it is fetched.
+     *
+     * @param consumer Receives each page of repositories, one at a time but not necessarily in order
+     */
+    void listRepositories(Consumer<List<RepositoryInfo>> consumer);
+
+    /**
+     * Look up a single repository by name, without listing the organization.
+     *
+     * @param name The name of the repository
+     * @return The repository, or empty if it does not exist
+     */
+    Optional<RepositoryInfo> findRepository(String name);
+
+    /**
+     * @return Every team in the organization
+     */
+    List<TeamState> loadTeams();
+
+    /**
+     * @param team The team to load members for
+     * @return Map of lower cased login -&gt; role for every member of the team
+     */
+    Map<String, TeamRole> loadMembers(TeamState team);
+
+    /**
+     * @param team The team to load repositories for
+     * @return Map of repository name -&gt; permission for every repository the team has access to
+     */
+    Map<String, RepositoryPermission> loadRepositories(TeamState team);
+
+    /**
+     * @param team The team
+     * @return The ID of the team, which only requires a request if the team was not listed
+     */
+    long getTeamId(TeamState team);
+
+    /**
+     * Change the role of a user on a team.
+     *
+     * @param team  The team
+     * @param login The login of the user
+     * @param role  The new role, {@link TeamRole#NONE} to remove the user from the team
+     */
+    void setRole(TeamState team, String login, TeamRole role);
+
+    /**
+     * Change the permission a team has over a repository.
+     *
+     * @param team       The team
+     * @param repository The name of the repository
+     * @param permission The new permission, {@link RepositoryPermission#NONE} to remove the team's access
+     */
+    void setPermission(TeamState team, String repository, RepositoryPermission permission);
+
+    @FunctionalInterface
+    interface Factory {
+
+        /**
+         * @param organization The name of the organization
+         * @param scheduler    Scheduler to make the requests for the organization through
+         * @return Loader for the organization
+         */
+        StateLoader create(String organization, RequestScheduler scheduler);
+
+    }
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+public enum StateLoaderType {
+
+    /**
+     * Load state using the REST API, with one paginated call chain per team per resource type
+     */
+    REST,
+
+    /**
+     * Load the state of a whole organization using a few batched GraphQL queries
+     */
+    GRAPHQL
+
+}
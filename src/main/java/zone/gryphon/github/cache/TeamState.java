@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import lombok.NonNull;
+import lombok.Value;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+
+import java.util.Map;
+
+/**
+ * Snapshot of a team as returned by a {@link StateLoader}.
+ * <p>
+ * Loaders which fetch the whole organization at once populate {@link #getMembers()} and {@link #getRepositories()}
+ * up front; loaders which fetch them on demand leave them null.
+ */
+@Value
+public class TeamState {
+
+    @NonNull
+    private final String name;
+
+    @NonNull
+    private final String slug;
+
+    /**
+     * Map of lower cased login -&gt; role, or null if not loaded
+     */
+    private final Map<String, TeamRole> members;
+
+    /**
+     * Map of repository name -&gt; permission, or null if not loaded
+     */
+    private final Map<String, RepositoryPermission> repositories;
+
+}
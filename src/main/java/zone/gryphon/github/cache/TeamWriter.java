@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.NonNull;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.http.RestClient;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Changes the members and repository permissions of teams with the REST API.
+ * <p>
+ * Changes are addressed by the ID of the team, the login of the user and the name of the repository, which are all
+ * known from listings, so neither the user nor the repository has to be fetched in full before it can be changed.
+ */
+class TeamWriter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String organization;
+
+    private final RestClient client;
+
+    private final RequestScheduler scheduler;
+
+    private final CacheStatistics statistics;
+
+    /**
+     * Users and repositories which have been changed without being fetched, so each is only counted once
+     */
+    private final Set<String> unfetched = ConcurrentHashMap.newKeySet();
+
+    TeamWriter(@NonNull String organization, @NonNull RestClient client, @NonNull RequestScheduler scheduler, @NonNull CacheStatistics statistics) {
+        this.organization = organization;
+        this.client = client;
+        this.scheduler = scheduler;
+        this.statistics = statistics;
+    }
+
+    void setRole(long team, @NonNull String login, @NonNull TeamRole role) {
+        String path = String.format("/teams/%d/memberships/%s", team, login);
+
+        if (role == TeamRole.NONE) {
+            send("DELETE", path, null);
+        } else {
+            send("PUT", path, MAPPER.createObjectNode().put("role", role == TeamRole.MAINTAINER ? "maintainer" : "member"));
+        }
+
+        unfetched("user", login);
+    }
+
+    void setPermission(long team, @NonNull String repository, @NonNull RepositoryPermission permission) {
+        String path = String.format("/teams/%d/repos/%s/%s", team, organization, repository);
+
+        if (permission == RepositoryPermission.NONE) {
+            send("DELETE", path, null);
+        } else {
+            send("PUT", path, MAPPER.createObjectNode().put("permission", map(permission)));
+        }
+
+        unfetched("repository", repository);
+    }
+
+    private void send(String method, String path, ObjectNode body) {
+        scheduler.write(() -> {
+            client.send(method, client.url(path), body);
+            return null;
+        });
+    }
+
+    private void unfetched(String kind, String name) {
+        if (unfetched.add(kind + ":" + name.toLowerCase(Locale.ROOT))) {
+            statistics.fetchAvoided();
+        }
+    }
+
+    private static String map(RepositoryPermission permission) {
+        switch (permission) {
+            case ADMIN:
+                return "admin";
+            case WRITE:
+                return "push";
+            case READ:
+                return "pull";
+            default:
+                throw new IllegalArgumentException("Cannot map permission \"" + permission + "\"");
+        }
+    }
+}
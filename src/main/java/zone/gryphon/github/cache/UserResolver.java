@@ -0,0 +1,207 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Metrics;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.kohsuke.github.GitHub;
+import zone.gryphon.github.http.GraphQLClient;
+import zone.gryphon.github.http.RequestScheduler;
+import zone.gryphon.github.utilities.WorkerPool;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves configured user names to the logins of the users.
+ * <p>
+ * Every user needed by a reconciliation is resolved in a single stage before planning, rather than one at a time as
+ * each team is processed, so a user who is configured on many teams is only looked up once. Lookups are made
+ * concurrently, in batches when the API supports it, and the results are kept in a {@link UserStore}.
+ */
+@Slf4j
+public class UserResolver {
+
+    private static final String USER_COUNTER = "automation.users";
+
+    /**
+     * Looks up the logins of a batch of users.
+     */
+    @FunctionalInterface
+    public interface Lookup {
+
+        /**
+         * @param names Distinct configured user names
+         * @return Map of name -&gt; login of every given name, empty if the user does not exist
+         */
+        Map<String, Optional<String>> lookup(List<String> names) throws IOException;
+
+    }
+
+    private final Lookup lookup;
+
+    private final int batchSize;
+
+    private final UserStore store;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param lookup    How to look up users which aren't in the store
+     * @param batchSize Maximum number of users to pass to a single lookup
+     * @param store     Store of previously resolved users
+     */
+    public UserResolver(@NonNull Lookup lookup, int batchSize, @NonNull UserStore store) {
+        this.lookup = lookup;
+        this.batchSize = batchSize;
+        this.store = store;
+    }
+
+    /**
+     * Resolver which looks users up in batches of up to 100 per GraphQL query.
+     */
+    public static UserResolver graphql(@NonNull GraphQLClient client, @NonNull RequestScheduler scheduler, @NonNull UserStore store) {
+        return new UserResolver(names -> scheduler.read(() -> queryUsers(client, names)), 100, store);
+    }
+
+    /**
+     * Resolver which looks users up one per REST request.
+     */
+    public static UserResolver rest(@NonNull GitHub github, @NonNull RequestScheduler scheduler, @NonNull UserStore store) {
+        return new UserResolver(names -> Collections.singletonMap(names.get(0), scheduler.read(() -> queryUser(github, names.get(0)))), 1, store);
+    }
+
+    /**
+     * Resolve every given user which is not already in the store. Lookups are submitted to the given pool, and are
+     * complete once the pool has been awaited.
+     *
+     * @param pool  The pool to run lookups in
+     * @param names Configured user names, may contain duplicates
+     */
+    public void resolve(@NonNull WorkerPool pool, @NonNull Collection<String> names) {
+        Set<String> unresolved = new TreeSet<>();
+
+        for (String name : names) {
+            if (!store.get(name).isPresent()) {
+                unresolved.add(name);
+            }
+        }
+
+        long cached = names.stream().distinct().count() - unresolved.size();
+        Metrics.counter(USER_COUNTER, "source", "store").increment(cached);
+        log.info("Resolving {} users, {} already known", unresolved.size(), cached);
+
+        for (List<String> batch : Lists.partition(new ArrayList<>(unresolved), batchSize)) {
+            pool.submit(() -> lookup(batch));
+        }
+    }
+
+    /**
+     * Get the login of a user, looking the user up if {@link #resolve(WorkerPool, Collection)} did not.
+     *
+     * @param name The configured user name
+     * @return The login of the user, or empty if the user does not exist
+     */
+    public Optional<String> get(@NonNull String name) {
+        Optional<Optional<String>> stored = store.get(name);
+
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        return lookup(Collections.singletonList(name)).get(name);
+    }
+
+    /**
+     * Persist the resolved users, so they are not looked up again by the next run.
+     */
+    public void save() {
+        try {
+            store.save();
+        } catch (IOException e) {
+            log.warn("Failed to save resolved users: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return The number of lookups which have been made
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private Map<String, Optional<String>> lookup(List<String> names) {
+        Map<String, Optional<String>> out;
+
+        try {
+            requests.incrementAndGet();
+            out = lookup.lookup(names);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to look up users %s", names), e);
+        }
+
+        out.forEach(store::put);
+        Metrics.counter(USER_COUNTER, "source", "lookup").increment(out.size());
+        return out;
+    }
+
+    private static Optional<String> queryUser(GitHub github, String name) throws IOException {
+        try {
+            return Optional.of(github.getUser(name).getLogin());
+        } catch (FileNotFoundException e) {
+            log.debug("User \"{}\" does not exist: {}: {}", name, e.getClass().getSimpleName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Map<String, Optional<String>> queryUsers(GraphQLClient client, List<String> names) throws IOException {
+        StringBuilder declarations = new StringBuilder();
+        StringBuilder fields = new StringBuilder();
+        Map<String, Object> variables = new LinkedHashMap<>();
+
+        for (int i = 0; i < names.size(); i++) {
+            declarations.append(i == 0 ? "" : ", ").append("$u").append(i).append(": String!");
+            fields.append("u").append(i).append(": user(login: $u").append(i).append(") { login } ");
+            variables.put("u" + i, names.get(i));
+        }
+
+        String query = "query(" + declarations + ") { " + fields + "}";
+
+        // users which don't exist are null, and fail with a NOT_FOUND error
+        JsonNode data = client.query(query, variables, Collections.singleton("NOT_FOUND"));
+        Map<String, Optional<String>> out = new LinkedHashMap<>();
+
+        for (int i = 0; i < names.size(); i++) {
+            JsonNode login = data.path("u" + i).path("login");
+            out.put(names.get(i), login.isTextual() ? Optional.of(login.asText()) : Optional.empty());
+        }
+
+        return out;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store of configured user name -&gt; login, including users which were found not to exist.
+ * <p>
+ * Entries expire after a time to live, which is usually much shorter for users which don't exist, so that accounts
+ * created after they were added to the configuration are picked up. When backed by a file, entries survive between runs.
+ */
+@Slf4j
+public class UserStore {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final TypeReference<Map<String, Entry>> ENTRIES = new TypeReference<Map<String, Entry>>() {
+    };
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final File file;
+
+    private final long ttl;
+
+    private final long missingTtl;
+
+    /**
+     * @param file       File to persist entries in, or null to only keep them in memory
+     * @param ttl        How long to trust the login of a user which exists
+     * @param missingTtl How long to trust that a user does not exist
+     */
+    public UserStore(File file, @NonNull Duration ttl, @NonNull Duration missingTtl) {
+        this.file = file;
+        this.ttl = ttl.toMillis();
+        this.missingTtl = missingTtl.toMillis();
+
+        if (file != null && file.exists()) {
+            try {
+                entries.putAll(MAPPER.readValue(file, ENTRIES));
+                log.debug("Read {} users from \"{}\"", entries.size(), file.getAbsolutePath());
+            } catch (IOException e) {
+                // only a cache, so everything can be looked up again
+                log.warn("Ignoring unreadable user cache \"{}\": {}", file.getAbsolutePath(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param name The configured user name
+     * @return Empty if the user is not stored or has expired, otherwise the login of the user, which is itself empty
+     * if the user does not exist
+     */
+    public Optional<Optional<String>> get(@NonNull String name) {
+        Entry entry = entries.get(name);
+
+        if (entry == null) {
+            return Optional.empty();
+        }
+
+        long age = System.currentTimeMillis() - entry.getResolved();
+
+        if (age >= (entry.getLogin() == null ? missingTtl : ttl)) {
+            entries.remove(name, entry);
+            return Optional.empty();
+        }
+
+        return Optional.of(Optional.ofNullable(entry.getLogin()));
+    }
+
+    /**
+     * @param name  The configured user name
+     * @param login The login of the user, or empty if the user does not exist
+     */
+    public void put(@NonNull String name, @NonNull Optional<String> login) {
+        Entry entry = new Entry();
+        entry.setLogin(login.orElse(null));
+        entry.setResolved(System.currentTimeMillis());
+        entries.put(name, entry);
+    }
+
+    /**
+     * Write the entries to the backing file, if there is one.
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file, new TreeMap<>(entries));
+    }
+
+    @Data
+    public static class Entry {
+
+        /**
+         * Login of the user, null if the user does not exist
+         */
+        private String login;
+
+        /**
+         * Epoch millisecond timestamp of when the user was looked up
+         */
+        private long resolved;
+
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.configuration;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import zone.gryphon.github.model.RepositoryPermission;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import static zone.gryphon.github.utilities.Varints.readVarint;
+import static zone.gryphon.github.utilities.Varints.writeVarint;
+
+/**
+ * Validated {@link Configuration}s in a compact binary form, keyed by a hash of the file they were read from, so that
+ * runs whose configuration file has not changed skip parsing YAML and bringing up Bean Validation.
+ * <p>
+ * The layout is:
+ * <pre>
+ * magic         "GPAC"
+ * version       u8
+ * hash          16 bytes; see {@link #hash(byte[])}
+ * strings       varint count, then (varint length, UTF-8 bytes) per string
+ * organizations varint count, then per organization:
+ *   name          string index
+ *   teams         varint count, then per team:
+ *     name          string index
+ *     permission    u8; {@link RepositoryPermission} ordinal + 1, or 0 if null
+ *     repositories  set
+ *     exclusions    set
+ *     overrides     varint 0 if null, otherwise count + 1, then (string index, u8 {@link RepositoryPermission} ordinal) per entry
+ *     membership    u8; 1 if present, 0 if null, then (if present) members, admins and banned as sets
+ * set           varint 0 if null, otherwise count + 1, then string index per entry
+ * </pre>
+ * Every string is stored once, and read back as a single shared instance. Sets and maps keep the order they were
+ * written in.
+ * <p>
+ * The version must be incremented whenever the configuration classes or their validation rules change, so that
+ * configurations cached by an older version of the application are validated again.
+ */
+@Slf4j
+@UtilityClass
+public final class ConfigurationCache {
+
+    private static final byte[] MAGIC = "GPAC".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private static final int HASH_LENGTH = 16;
+
+    private static final RepositoryPermission[] PERMISSIONS = RepositoryPermission.values();
+
+    /**
+     * The hash is the length of the content followed by its CRC-32 and Adler-32 checksums. Both checksums are computed
+     * natively, where a cryptographic hash of a large file would take longer than reading the cache, on a freshly
+     * started JVM; the hash only needs to detect that the file has changed, not to resist deliberate collisions.
+     *
+     * @param content Content of a configuration file
+     * @return The hash which keys the cached form of the configuration
+     */
+    public static byte[] hash(@NonNull byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+
+        Adler32 adler = new Adler32();
+        adler.update(content, 0, content.length);
+
+        return ByteBuffer.allocate(HASH_LENGTH)
+            .putLong(content.length)
+            .putInt((int) crc.getValue())
+            .putInt((int) adler.getValue())
+            .array();
+    }
+
+    /**
+     * @param file The cache file
+     * @param hash Hash of the configuration file
+     * @return The cached configuration, or empty if the cache doesn't exist, is for a different configuration file or
+     * version of the application, or could not be read
+     */
+    public static Optional<Configuration> read(@NonNull File file, @NonNull byte[] hash) {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+
+            if (!Arrays.equals(magic, MAGIC) || (buffer.get() & 0xFF) != VERSION) {
+                log.info("Configuration cache \"{}\" was written by a different version, ignoring it", file.getAbsolutePath());
+                return Optional.empty();
+            }
+
+            byte[] cachedHash = new byte[hash.length];
+            buffer.get(cachedHash);
+
+            if (!Arrays.equals(cachedHash, hash)) {
+                log.info("Configuration file has changed since configuration cache \"{}\" was written", file.getAbsolutePath());
+                return Optional.empty();
+            }
+
+            return Optional.of(read(buffer));
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            log.warn("Failed to read configuration cache \"{}\", ignoring it", file.getAbsolutePath(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write the cached form of a configuration, replacing the cache file atomically so that concurrent runs never
+     * read a partially written cache.
+     *
+     * @param file          The cache file
+     * @param hash          Hash of the configuration file
+     * @param configuration The configuration, which must already have been validated
+     * @throws IOException If the cache could not be written
+     */
+    public static void write(@NonNull File file, @NonNull byte[] hash, @NonNull Configuration configuration) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+
+        // first pass: intern every string, so the table can be written up front
+        for (Map.Entry<String, OrganizationConfiguration> organization : configuration.getOrganizations().entrySet()) {
+            intern(strings, organization.getKey());
+
+            for (Map.Entry<String, TeamConfiguration> team : organization.getValue().getTeams().entrySet()) {
+                intern(strings, team.getKey());
+                intern(strings, team.getValue().getRepositories());
+                intern(strings, team.getValue().getExclusions());
+
+                if (team.getValue().getOverrides() != null) {
+                    intern(strings, team.getValue().getOverrides().keySet());
+                }
+
+                TeamMembershipConfiguration membership = team.getValue().getMembership();
+
+                if (membership != null) {
+                    intern(strings, membership.getMembers());
+                    intern(strings, membership.getAdmins());
+                    intern(strings, membership.getBanned());
+                }
+            }
+        }
+
+        File temporary = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.write(hash);
+
+            writeVarint(out, strings.size());
+
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+            }
+
+            writeVarint(out, configuration.getOrganizations().size());
+
+            for (Map.Entry<String, OrganizationConfiguration> organization : configuration.getOrganizations().entrySet()) {
+                writeVarint(out, strings.get(organization.getKey()));
+                writeVarint(out, organization.getValue().getTeams().size());
+
+                for (Map.Entry<String, TeamConfiguration> team : organization.getValue().getTeams().entrySet()) {
+                    writeVarint(out, strings.get(team.getKey()));
+                    writeTeam(out, strings, team.getValue());
+                }
+            }
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Configuration read(ByteBuffer buffer) {
+        String[] strings = new String[readVarint(buffer)];
+
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint(buffer)];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int organizationCount = readVarint(buffer);
+        Map<String, OrganizationConfiguration> organizations = new LinkedHashMap<>(capacity(organizationCount));
+
+        for (int i = 0; i < organizationCount; i++) {
+            String name = strings[readVarint(buffer)];
+            int teamCount = readVarint(buffer);
+            Map<String, TeamConfiguration> teams = new LinkedHashMap<>(capacity(teamCount));
+
+            for (int j = 0; j < teamCount; j++) {
+                teams.put(strings[readVarint(buffer)], readTeam(buffer, strings));
+            }
+
+            OrganizationConfiguration organization = new OrganizationConfiguration();
+            organization.setTeams(teams);
+            organizations.put(name, organization);
+        }
+
+        Configuration out = new Configuration();
+        out.setOrganizations(organizations);
+        return out;
+    }
+
+    private static void writeTeam(DataOutputStream out, Map<String, Integer> strings, TeamConfiguration team) throws IOException {
+        out.writeByte(team.getPermission() == null ? 0 : team.getPermission().ordinal() + 1);
+        writeSet(out, strings, team.getRepositories());
+        writeSet(out, strings, team.getExclusions());
+
+        if (team.getOverrides() == null) {
+            writeVarint(out, 0);
+        } else {
+            writeVarint(out, team.getOverrides().size() + 1);
+
+            for (Map.Entry<String, RepositoryPermission> override : team.getOverrides().entrySet()) {
+                writeVarint(out, strings.get(override.getKey()));
+                out.writeByte(override.getValue().ordinal());
+            }
+        }
+
+        TeamMembershipConfiguration membership = team.getMembership();
+        out.writeByte(membership == null ? 0 : 1);
+
+        if (membership != null) {
+            writeSet(out, strings, membership.getMembers());
+            writeSet(out, strings, membership.getAdmins());
+            writeSet(out, strings, membership.getBanned());
+        }
+    }
+
+    private static TeamConfiguration readTeam(ByteBuffer buffer, String[] strings) {
+        TeamConfiguration team = new TeamConfiguration();
+
+        int permission = buffer.get();
+        team.setPermission(permission == 0 ? null : PERMISSIONS[permission - 1]);
+        team.setRepositories(readSet(buffer, strings));
+        team.setExclusions(readSet(buffer, strings));
+
+        int overrideCount = readVarint(buffer);
+
+        if (overrideCount > 0) {
+            Map<String, RepositoryPermission> overrides = new LinkedHashMap<>(capacity(overrideCount - 1));
+
+            for (int i = 1; i < overrideCount; i++) {
+                overrides.put(strings[readVarint(buffer)], PERMISSIONS[buffer.get()]);
+            }
+
+            team.setOverrides(overrides);
+        }
+
+        if (buffer.get() != 0) {
+            TeamMembershipConfiguration membership = new TeamMembershipConfiguration();
+            membership.setMembers(readSet(buffer, strings));
+            membership.setAdmins(readSet(buffer, strings));
+            membership.setBanned(readSet(buffer, strings));
+            team.setMembership(membership);
+        }
+
+        return team;
+    }
+
+    private static void writeSet(DataOutputStream out, Map<String, Integer> strings, Set<String> set) throws IOException {
+        if (set == null) {
+            writeVarint(out, 0);
+            return;
+        }
+
+        writeVarint(out, set.size() + 1);
+
+        for (String string : set) {
+            writeVarint(out, strings.get(string));
+        }
+    }
+
+    private static Set<String> readSet(ByteBuffer buffer, String[] strings) {
+        int count = readVarint(buffer);
+
+        if (count == 0) {
+            return null;
+        }
+
+        Set<String> out = new LinkedHashSet<>(capacity(count - 1));
+
+        for (int i = 1; i < count; i++) {
+            out.add(strings[readVarint(buffer)]);
+        }
+
+        return out;
+    }
+
+    private static void intern(Map<String, Integer> strings, Collection<String> collection) {
+        if (collection != null) {
+            collection.forEach(string -> intern(strings, string));
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        strings.putIfAbsent(string, strings.size());
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.configuration;
+
+import lombok.NonNull;
+import lombok.Value;
+import zone.gryphon.github.model.RepositoryVisibility;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An entry of the {@code repositories} or {@code exclusions} of a team, or a key of its {@code overrides}, which
+ * selects repositories:
+ * <ul>
+ * <li>{@code name}: the repository with exactly that name</li>
+ * <li>{@code payments-*}: repositories whose names match the glob; {@code *} matches any run of characters, and
+ * {@code ?} matches any single character</li>
+ * <li>{@code regex:payments-[0-9]+}: repositories whose entire names match the regular expression</li>
+ * <li>{@code topic:pci}: repositories with the topic</li>
+ * <li>{@code archived:true} or {@code archived:false}: repositories which are, or are not, archived</li>
+ * <li>{@code visibility:public}, {@code visibility:private} or {@code visibility:internal}: repositories with that
+ * visibility</li>
+ * </ul>
+ * Since repository names can't contain {@code :}, {@code *} or {@code ?}, no name is mistaken for any other kind of
+ * selector.
+ */
+@Value
+public class RepositorySelector {
+
+    public enum Kind {
+
+        /**
+         * Matches the repository named by {@link #getValue()}
+         */
+        NAME,
+
+        /**
+         * Matches repositories whose names start with {@link #getValue()}; a glob whose only wildcard is a trailing
+         * {@code *}
+         */
+        PREFIX,
+
+        /**
+         * Matches repositories whose names match {@link #getPattern()}; any other glob, or a regular expression
+         */
+        PATTERN,
+
+        /**
+         * Matches repositories with the topic {@link #getValue()}
+         */
+        TOPIC,
+
+        /**
+         * Matches repositories whose archived state is {@link #getValue()}, either {@code true} or {@code false}
+         */
+        ARCHIVED,
+
+        /**
+         * Matches repositories whose visibility is {@link #getVisibility()}
+         */
+        VISIBILITY
+
+    }
+
+    private static final String REGEX = "regex:";
+
+    private static final String TOPIC = "topic:";
+
+    private static final String ARCHIVED = "archived:";
+
+    private static final String VISIBILITY = "visibility:";
+
+    @NonNull
+    private final Kind kind;
+
+    @NonNull
+    private final String value;
+
+    /**
+     * Compiled pattern of {@link Kind#PATTERN} selectors, otherwise null
+     */
+    private final Pattern pattern;
+
+    /**
+     * Visibility of {@link Kind#VISIBILITY} selectors, otherwise null
+     */
+    private final RepositoryVisibility visibility;
+
+    /**
+     * @param selector The selector, as written in the configuration
+     * @return The parsed selector
+     * @throws IllegalArgumentException If the selector is not valid
+     */
+    public static RepositorySelector parse(@NonNull String selector) {
+        if (selector.startsWith(REGEX)) {
+            String regex = selector.substring(REGEX.length());
+
+            try {
+                return new RepositorySelector(Kind.PATTERN, regex, Pattern.compile(regex), null);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException(String.format("Invalid regular expression in selector \"%s\": %s", selector, e.getDescription()), e);
+            }
+        }
+
+        if (selector.startsWith(TOPIC)) {
+            return new RepositorySelector(Kind.TOPIC, selector.substring(TOPIC.length()).toLowerCase(Locale.ROOT), null, null);
+        }
+
+        if (selector.startsWith(ARCHIVED)) {
+            String archived = selector.substring(ARCHIVED.length()).toLowerCase(Locale.ROOT);
+
+            if (!archived.equals("true") && !archived.equals("false")) {
+                throw new IllegalArgumentException(String.format("Selector \"%s\" must be either \"archived:true\" or \"archived:false\"", selector));
+            }
+
+            return new RepositorySelector(Kind.ARCHIVED, archived, null, null);
+        }
+
+        if (selector.startsWith(VISIBILITY)) {
+            String visibility = selector.substring(VISIBILITY.length()).toUpperCase(Locale.ROOT);
+
+            try {
+                return new RepositorySelector(Kind.VISIBILITY, visibility, null, RepositoryVisibility.valueOf(visibility));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Unknown visibility in selector \"%s\"", selector), e);
+            }
+        }
+
+        if (selector.indexOf(':') >= 0) {
+            throw new IllegalArgumentException(String.format("Unknown kind of selector \"%s\"", selector));
+        }
+
+        int wildcard = firstWildcard(selector);
+
+        if (wildcard < 0) {
+            return new RepositorySelector(Kind.NAME, selector, null, null);
+        }
+
+        if (wildcard == selector.length() - 1 && selector.charAt(wildcard) == '*') {
+            return new RepositorySelector(Kind.PREFIX, selector.substring(0, wildcard), null, null);
+        }
+
+        return new RepositorySelector(Kind.PATTERN, selector, globToPattern(selector), null);
+    }
+
+    /**
+     * @return True if the selector is the name of a single repository
+     */
+    public boolean isName() {
+        return kind == Kind.NAME;
+    }
+
+    private static int firstWildcard(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            if (glob.charAt(i) == '*' || glob.charAt(i) == '?') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder out = new StringBuilder();
+        int literal = 0;
+
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+
+            if (c == '*' || c == '?') {
+                if (literal < i) {
+                    out.append(Pattern.quote(glob.substring(literal, i)));
+                }
+
+                out.append(c == '*' ? ".*" : ".");
+                literal = i + 1;
+            }
+        }
+
+        if (literal < glob.length()) {
+            out.append(Pattern.quote(glob.substring(literal)));
+        }
+
+        return Pattern.compile(out.toString());
+    }
+
+}
@@ -16,6 +16,7 @@
 package zone.gryphon.github.configuration;
 
 import lombok.Data;
+import zone.gryphon.github.configuration.validation.ValidSelectors;
 import zone.gryphon.github.model.RepositoryPermission;
 
 import javax.validation.Valid;
@@ -23,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 
 @Data
+@ValidSelectors
 public class TeamConfiguration {
 
     @Valid
@@ -30,10 +32,20 @@ public class TeamConfiguration {
 
     private RepositoryPermission permission;
 
+    /**
+     * {@link RepositorySelector}s of the repositories to manage; every repository if empty
+     */
     private Set<String> repositories;
 
+    /**
+     * {@link RepositorySelector}s of repositories not to manage
+     */
     private Set<String> exclusions;
 
+    /**
+     * Map of {@link RepositorySelector} -&gt; permission, replacing the default permission; where several selectors
+     * match a repository, the last one wins
+     */
     private Map<String, RepositoryPermission> overrides;
 
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.configuration.validation;
+
+import zone.gryphon.github.configuration.RepositorySelector;
+import zone.gryphon.github.configuration.TeamConfiguration;
+import zone.gryphon.github.utilities.CollectionUtilities;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+import java.util.Collection;
+
+public class ValidSelectorsValidator implements ConstraintValidator<ValidSelectors, TeamConfiguration> {
+
+    @Override
+    public boolean isValid(TeamConfiguration dto, ConstraintValidatorContext constraintContext) {
+
+        if (dto == null) {
+            return true;
+        }
+
+        constraintContext.disableDefaultConstraintViolation();
+
+        boolean valid = true;
+
+        //noinspection ConstantConditions
+        valid &= ensureValid("repositories", CollectionUtilities.nullToEmpty(dto.getRepositories()), constraintContext);
+        valid &= ensureValid("exclusions", CollectionUtilities.nullToEmpty(dto.getExclusions()), constraintContext);
+        valid &= ensureValid("overrides", CollectionUtilities.nullToEmpty(dto.getOverrides()).keySet(), constraintContext);
+
+        return valid;
+    }
+
+    private boolean ensureValid(String name, Collection<String> selectors, ConstraintValidatorContext constraintContext) {
+        boolean valid = true;
+
+        for (String selector : selectors) {
+            try {
+                RepositorySelector.parse(selector);
+            } catch (IllegalArgumentException e) {
+                constraintContext
+                    .buildConstraintViolationWithTemplate(escape(e.getMessage()))
+                    .addPropertyNode(name)
+                    .addConstraintViolation();
+
+                valid = false;
+            }
+        }
+
+        return valid;
+    }
+
+    // selectors may contain characters which are special in message templates, such as the braces of a regex
+    private static String escape(String message) {
+        return message.replaceAll("([\\\\{}$])", "\\\\$1");
+    }
+
+}
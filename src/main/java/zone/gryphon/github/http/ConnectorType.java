@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+public enum ConnectorType {
+
+    /**
+     * OkHttp, with a connection pool sized to the number of concurrent requests, HTTP/2 where the server supports it,
+     * transparent gzip, and an optional on-disk response cache
+     */
+    OKHTTP,
+
+    /**
+     * The JDK's {@link java.net.HttpURLConnection}, which keeps only a handful of idle connections alive and can't
+     * cache responses
+     */
+    URL_CONNECTION
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.extras.ImpatientHttpConnector;
+import org.kohsuke.github.extras.OkHttp3Connector;
+
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the connectors every request to Github is sent through.
+ */
+@UtilityClass
+public class Connectors {
+
+    /**
+     * How long an idle connection is kept open for reuse
+     */
+    private static final Duration KEEP_ALIVE = Duration.ofMinutes(5);
+
+    /**
+     * Create a connector.
+     *
+     * @param type           The HTTP client to use
+     * @param connections    Number of idle connections to keep open, which should be at least the number of requests
+     *                       which may be in flight at once, so that no request has to wait for a new connection
+     * @param connectTimeout Timeout for opening a connection
+     * @param readTimeout    Timeout for reading from a connection
+     * @param cache          Cache to serve responses through, or null for none; only supported by
+     *                       {@link ConnectorType#OKHTTP}
+     * @return The connector
+     */
+    public static HttpConnector create(@NonNull ConnectorType type, int connections, @NonNull Duration connectTimeout, @NonNull Duration readTimeout, HttpCache cache) {
+        switch (type) {
+            case URL_CONNECTION:
+                if (cache != null) {
+                    throw new IllegalArgumentException("Responses can only be cached with the " + ConnectorType.OKHTTP + " connector");
+                }
+
+                return new ImpatientHttpConnector(url -> (HttpURLConnection) url.openConnection(), (int) connectTimeout.toMillis(), (int) readTimeout.toMillis());
+            case OKHTTP:
+            default:
+                OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(Math.max(1, connections), KEEP_ALIVE.toMillis(), TimeUnit.MILLISECONDS))
+                    // HTTP/2 is negotiated with TLS, so plain HTTP servers are still spoken to with HTTP/1.1
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .writeTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .eventListenerFactory(HttpMetricsListener.factory(Metrics.globalRegistry));
+
+                return cache == null ? okhttp(builder.build()) : cache.connector(builder);
+        }
+    }
+
+    /**
+     * Create a connector which sends requests with the given OkHttp client.
+     *
+     * @param client The client
+     * @return The connector
+     */
+    // github-api 1.95 only ships OkHttp3Connector, which is built on the deprecated OkUrlFactory
+    @SuppressWarnings("deprecation")
+    static HttpConnector okhttp(@NonNull OkHttpClient client) {
+        return new OkHttp3Connector(new okhttp3.OkUrlFactory(client));
+    }
+
+}
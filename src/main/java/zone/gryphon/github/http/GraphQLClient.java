@@ -0,0 +1,150 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.NonNull;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.HttpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Minimal client for the Github GraphQL API.
+ */
+public class GraphQLClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String RATE_LIMITED = "RATE_LIMITED";
+
+    private final URL endpoint;
+
+    private final String token;
+
+    private final HttpConnector connector;
+
+    private final RequestScheduler scheduler;
+
+    /**
+     * @param apiUrl    URL of the Github REST API, the GraphQL endpoint is derived from it
+     * @param token     Token to authenticate with; the GraphQL API does not support password authentication
+     * @param connector Connector used to open connections
+     * @param scheduler Scheduler to report the rate limit of every response to
+     * @throws IOException If the URL is malformed
+     */
+    public GraphQLClient(@NonNull String apiUrl, @NonNull String token, @NonNull HttpConnector connector, @NonNull RequestScheduler scheduler) throws IOException {
+        this.endpoint = new URL(endpointFor(apiUrl));
+        this.token = token;
+        this.connector = connector;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Execute a query.
+     *
+     * @param query     The query
+     * @param variables Values for the variables used by the query
+     * @return The "data" node of the response
+     * @throws IOException If the request failed, or the response contained errors
+     */
+    public JsonNode query(@NonNull String query, @NonNull Map<String, Object> variables) throws IOException {
+        return query(query, variables, Collections.emptySet());
+    }
+
+    /**
+     * Execute a query, tolerating errors of the given types.
+     * Fields which failed with a tolerated error are null in the response, e.g. a lookup of a user who does not exist
+     * fails with a "NOT_FOUND" error.
+     *
+     * @param query        The query
+     * @param variables    Values for the variables used by the query
+     * @param ignoredTypes Types of errors which should not fail the query
+     * @return The "data" node of the response
+     * @throws IOException If the request failed, or the response contained errors which are not ignored;
+     *                     a rate limited query always fails
+     */
+    public JsonNode query(@NonNull String query, @NonNull Map<String, Object> variables, @NonNull Set<String> ignoredTypes) throws IOException {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("query", query);
+        body.set("variables", MAPPER.valueToTree(variables));
+
+        HttpURLConnection connection = connector.connect(endpoint);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Authorization", "bearer " + token);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+
+        try (OutputStream out = connection.getOutputStream()) {
+            MAPPER.writeValue(out, body);
+        }
+
+        int code = connection.getResponseCode();
+        scheduler.observe(connection);
+
+        if (code != HttpURLConnection.HTTP_OK) {
+            throw new HttpException(HttpResponses.readError(connection), code, connection.getResponseMessage(), endpoint.toString());
+        }
+
+        JsonNode response;
+
+        try (InputStream in = connection.getInputStream()) {
+            response = MAPPER.readTree(in);
+        }
+
+        List<JsonNode> errors = new ArrayList<>();
+
+        for (JsonNode error : response.path("errors")) {
+            // the rate limit of the GraphQL API is reported as an error of a successful response
+            if (RATE_LIMITED.equals(error.path("type").asText())) {
+                throw new RateLimitedException(error.path("message").asText(), code, connection.getResponseMessage(), endpoint.toString());
+            }
+
+            if (!ignoredTypes.contains(error.path("type").asText())) {
+                errors.add(error);
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw new IOException(String.format("GraphQL query failed: %s", errors));
+        }
+
+        return response.path("data");
+    }
+
+    static String endpointFor(String apiUrl) {
+        String trimmed = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+
+        // Github Enterprise serves REST from "/api/v3" and GraphQL from "/api/graphql"
+        if (trimmed.endsWith("/v3")) {
+            return trimmed.substring(0, trimmed.length() - "/v3".length()) + "/graphql";
+        }
+
+        return trimmed + "/graphql";
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent, size bounded HTTP cache for Github API responses.
+ * <p>
+ * Responses are stored on disk along with their ETags, and evicted least-recently-used first once the cache grows
+ * past its maximum size. Cached responses are always revalidated with a conditional request, which Github answers
+ * with "304 Not Modified" without counting it against the rate limit when nothing has changed.
+ */
+@Slf4j
+public class HttpCache implements AutoCloseable {
+
+    private static final CacheControl REVALIDATE = new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build();
+
+    private final Cache cache;
+
+    public HttpCache(@NonNull File directory, long maxSizeBytes) {
+        this.cache = new Cache(directory, maxSizeBytes);
+    }
+
+    /**
+     * Create a connector which serves requests through this cache.
+     *
+     * @param builder Builder for the client to send requests with
+     * @return The connector
+     */
+    public HttpConnector connector(@NonNull OkHttpClient.Builder builder) {
+        // note: OkUrlFactory discards the interceptors of the client, so revalidation is requested with a header instead
+        HttpConnector connector = Connectors.okhttp(builder.cache(cache).build());
+
+        return url -> {
+            HttpURLConnection connection = connector.connect(url);
+
+            // Github allows responses to be cached for up to a minute; never serve them without checking they're current
+            connection.setRequestProperty("Cache-Control", REVALIDATE.toString());
+            return connection;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %d served from cache after revalidation, %d sent to the network, %d bytes stored in \"%s\"",
+            cache.requestCount(), cache.hitCount(), cache.networkCount(), size(), cache.directory().getAbsolutePath());
+    }
+
+    @Override
+    public void close() {
+        try {
+            cache.close();
+        } catch (IOException e) {
+            log.warn("Failed to close HTTP cache in \"{}\"", cache.directory().getAbsolutePath(), e);
+        }
+    }
+
+    private long size() {
+        try {
+            return cache.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency, status and size of every request sent to Github, tagged by endpoint.
+ * <p>
+ * An event listener is used rather than an interceptor, since {@link okhttp3.OkUrlFactory} discards the interceptors
+ * of the client it wraps. Requests answered entirely from the cache are recorded with the status "cached", and the
+ * bytes counted are only those which actually crossed the network.
+ */
+public class HttpMetricsListener extends EventListener {
+
+    /**
+     * Map of path segment -&gt; number of path segments following it which are identifiers, rather than part of the endpoint
+     */
+    private static final Map<String, Integer> IDENTIFIERS;
+
+    static {
+        Map<String, Integer> identifiers = new HashMap<>();
+        identifiers.put("orgs", 1);
+        identifiers.put("users", 1);
+        identifiers.put("teams", 1);
+        identifiers.put("members", 1);
+        identifiers.put("memberships", 1);
+        identifiers.put("repos", 2);
+        IDENTIFIERS = identifiers;
+    }
+
+    private final MeterRegistry registry;
+
+    private final String method;
+
+    private final String endpoint;
+
+    private long start;
+
+    private String status = "cached";
+
+    private long requestBytes;
+
+    private long responseBytes;
+
+    private HttpMetricsListener(MeterRegistry registry, Call call) {
+        this.registry = registry;
+        this.method = call.request().method();
+        this.endpoint = endpoint(call.request().url().encodedPathSegments());
+    }
+
+    /**
+     * @param registry The registry to record metrics to
+     * @return Factory creating a listener for each call
+     */
+    public static EventListener.Factory factory(@NonNull MeterRegistry registry) {
+        return call -> new HttpMetricsListener(registry, call);
+    }
+
+    @Override
+    public void callStart(Call call) {
+        start = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestBytes += byteCount;
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        status = Integer.toString(response.code());
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        responseBytes += byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        record();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        status = "IO_ERROR";
+        record();
+    }
+
+    private void record() {
+        Timer.builder("github.http.requests")
+            .description("Requests sent to the Github API")
+            .tag("method", method)
+            .tag("endpoint", endpoint)
+            .tag("status", status)
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        bytes("github.http.request.bytes").record(requestBytes);
+        bytes("github.http.response.bytes").record(responseBytes);
+    }
+
+    private DistributionSummary bytes(String name) {
+        return DistributionSummary.builder(name)
+            .baseUnit("bytes")
+            .tag("method", method)
+            .tag("endpoint", endpoint)
+            .register(registry);
+    }
+
+    /**
+     * Replace identifiers in the given path with placeholders, so that e.g. every team's member listing is tagged with
+     * the same endpoint.
+     *
+     * @param segments The path segments of the request
+     * @return The templated path
+     */
+    static String endpoint(List<String> segments) {
+        StringBuilder out = new StringBuilder();
+
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            out.append('/').append(segment);
+
+            int identifiers = IDENTIFIERS.getOrDefault(segment, 0);
+
+            for (int j = 0; j < identifiers && i + 1 < segments.size(); j++) {
+                out.append("/{}");
+                i++;
+            }
+        }
+
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Helpers for reading the responses received by the clients of this package.
+ */
+@UtilityClass
+class HttpResponses {
+
+    /**
+     * @return The body of the error response of the connection, or an empty string if there isn't one
+     */
+    static String readError(HttpURLConnection connection) {
+        try (InputStream in = connection.getErrorStream()) {
+
+            if (in == null) {
+                return "";
+            }
+
+            try (Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A")) {
+                return scanner.hasNext() ? scanner.next() : "";
+            }
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.NonNull;
+import zone.gryphon.github.utilities.WorkerPool;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches every page of a REST listing.
+ * <p>
+ * Github links the first page of a listing to its last page, so the number of pages is known as soon as the first one
+ * has been fetched. The remaining pages are then requested by number, up to {@code concurrency} at a time, rather than
+ * by following the link to the next page one request after another. Listings which don't link to a numbered last page
+ * are followed one page at a time.
+ * <p>
+ * Pages are passed to the consumer as they arrive, which is not necessarily in order, but never concurrently.
+ * The pages of every listing are fetched on one shared pool, so the workers fetching pages are bounded across listings
+ * as well as within each.
+ */
+public class PageFetcher {
+
+    private static final Pattern PAGE = Pattern.compile("([?&]page=)(\\d+)");
+
+    private final RestClient client;
+
+    private final RequestScheduler scheduler;
+
+    private final WorkerPool pool;
+
+    private final int concurrency;
+
+    /**
+     * @param client      Client to fetch pages with
+     * @param scheduler   Scheduler to make the requests through, which still bounds the requests in flight overall
+     * @param pool        Pool to fetch pages on, shared by every listing
+     * @param concurrency Maximum number of pages of a single listing to fetch at once
+     */
+    public PageFetcher(@NonNull RestClient client, @NonNull RequestScheduler scheduler, @NonNull WorkerPool pool, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive, got " + concurrency);
+        }
+
+        this.client = client;
+        this.scheduler = scheduler;
+        this.pool = pool;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Fetch every page of a listing.
+     *
+     * @param url      URL of the first page
+     * @param consumer Receives the body of each page
+     */
+    public void fetch(@NonNull URL url, @NonNull Consumer<JsonNode> consumer) {
+        RestClient.Page first = scheduler.read(() -> client.get(url));
+        consumer.accept(first.getBody());
+
+        URL last = first.getLast();
+        int pages = pageOf(last);
+
+        // with only one page left, there is nothing to fetch concurrently
+        if (concurrency == 1 || pages < 3) {
+            follow(first.getNext(), consumer);
+            return;
+        }
+
+        Object lock = new Object();
+        Semaphore slots = new Semaphore(concurrency);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        // once a page has failed the listing is incomplete, so the pages which are left aren't fetched
+        for (int page = 2; page <= pages && failures.isEmpty(); page++) {
+            final int current = page;
+
+            // the pool is shared by every listing, so this listing's share of it is bounded separately
+            acquire(slots);
+
+            try {
+                futures.add(pool.submit(() -> {
+                    try {
+                        JsonNode body = scheduler.read(() -> client.get(withPage(last, current))).getBody();
+
+                        synchronized (lock) {
+                            consumer.accept(body);
+                        }
+                    } catch (RuntimeException e) {
+                        // recorded rather than thrown, so that the shared pool has nothing to keep track of
+                        failures.add(e);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        WorkerPool.await(futures);
+
+        if (!failures.isEmpty()) {
+            RuntimeException e = new RuntimeException(String.format("Failed to fetch %d of the %d pages of \"%s\"", failures.size(), pages, url), failures.get(0));
+            failures.stream().skip(1).forEach(e::addSuppressed);
+            throw e;
+        }
+    }
+
+    /**
+     * Fetch pages one at a time, following the link from each page to the next.
+     */
+    private void follow(URL next, Consumer<JsonNode> consumer) {
+        URL url = next;
+
+        while (url != null) {
+            final URL current = url;
+            RestClient.Page page = scheduler.read(() -> client.get(current));
+            consumer.accept(page.getBody());
+            url = page.getNext();
+        }
+    }
+
+    private static void acquire(Semaphore slots) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to fetch a page", e);
+        }
+    }
+
+    /**
+     * @return The number of the given page, or 0 if there is no page or it isn't addressed by number
+     */
+    static int pageOf(URL url) {
+        if (url == null) {
+            return 0;
+        }
+
+        Matcher matcher = PAGE.matcher(url.toString());
+        return matcher.find() ? Integer.parseInt(matcher.group(2)) : 0;
+    }
+
+    /**
+     * @return The given page URL, changed to address a different page
+     */
+    static URL withPage(URL url, int page) throws IOException {
+        return new URL(PAGE.matcher(url.toString()).replaceFirst("$1" + page));
+    }
+}
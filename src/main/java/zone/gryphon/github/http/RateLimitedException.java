@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import org.kohsuke.github.HttpException;
+
+/**
+ * Thrown when a request was rate limited, for the {@link RequestScheduler} to retry it.
+ * This includes responses which succeeded at the HTTP level, as the GraphQL API reports errors of type "RATE_LIMITED".
+ */
+class RateLimitedException extends HttpException {
+
+    private static final long serialVersionUID = 1L;
+
+    RateLimitedException(String message, int responseCode, String responseMessage, String url) {
+        super(message, responseCode, responseMessage, url);
+    }
+
+    RateLimitedException(String message, int responseCode, String responseMessage, String url, Throwable cause) {
+        super(message, responseCode, responseMessage, url, cause);
+    }
+}
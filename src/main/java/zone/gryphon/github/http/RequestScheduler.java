@@ -0,0 +1,465 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.kohsuke.github.AbuseLimitHandler;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpException;
+import org.kohsuke.github.PagedIterable;
+import org.kohsuke.github.PagedIterator;
+import org.kohsuke.github.RateLimitHandler;
+import zone.gryphon.github.utilities.IOFunction;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Central scheduler which every call to the Github API goes through.
+ * <p>
+ * The scheduler bounds the number of requests in flight, paces mutating requests so that they stay under Github's
+ * secondary ("abuse") rate limits, holds back requests when the primary rate limit is nearly exhausted, and retries
+ * requests which were rejected because of either limit instead of failing.
+ * <p>
+ * The rate limit is tracked from the headers of the responses which clients {@link #observe report} to the scheduler.
+ */
+@Slf4j
+public class RequestScheduler {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long RESET_SLACK_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * The scheduler this one is an account of, or null if this is the scheduler which actually makes requests
+     */
+    private final RequestScheduler parent;
+
+    private final Semaphore permits;
+
+    private final long writeIntervalNanos;
+
+    private final int quotaReserve;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong throttleNanos = new AtomicLong();
+
+    /**
+     * Epoch millisecond before which no request is made, as asked for by the "Retry-After" header of a response
+     */
+    private final AtomicLong pausedUntil = new AtomicLong();
+
+    private long nextWriteNanos = System.nanoTime();
+
+    /**
+     * The primary rate limit as of the latest response which reported it, or null if none has yet
+     */
+    private volatile Quota quota;
+
+    /**
+     * @param maxConcurrentRequests Maximum number of requests which may be in flight at once
+     * @param writeInterval         Minimum amount of time between the start of two mutating requests
+     * @param quotaReserve          Number of requests from the primary rate limit which are never used
+     */
+    public RequestScheduler(int maxConcurrentRequests, @NonNull Duration writeInterval, int quotaReserve) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("Maximum number of concurrent requests must be positive, got " + maxConcurrentRequests);
+        }
+
+        this.parent = null;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.writeIntervalNanos = writeInterval.toNanos();
+        this.quotaReserve = quotaReserve;
+
+        Metrics.gauge("github.scheduler.queue.depth", queueDepth);
+        Metrics.gauge("github.rate.limit.remaining", this, RequestScheduler::getRateLimitRemaining);
+    }
+
+    private RequestScheduler(RequestScheduler parent) {
+        this.parent = parent;
+        this.permits = parent.permits;
+        this.writeIntervalNanos = parent.writeIntervalNanos;
+        this.quotaReserve = parent.quotaReserve;
+    }
+
+    /**
+     * Create an account of this scheduler. Requests made through the account share every limit of this scheduler,
+     * and are counted by both, so that the requests made for one part of the work can be told apart.
+     *
+     * @return The account
+     */
+    public RequestScheduler account() {
+        return new RequestScheduler(this);
+    }
+
+    /**
+     * Build a {@link GitHub} client whose rate limit failures are handled by this scheduler.
+     * The client fails rejected requests instead of waiting, so that no permit is held while the limit is waited out.
+     *
+     * @param builder The builder to use
+     * @return The client
+     * @throws IOException If the client could not be created
+     */
+    public GitHub connect(@NonNull GitHubBuilder builder) throws IOException {
+        return builder
+            .withRateLimitHandler(new RejectingRateLimitHandler())
+            .withAbuseLimitHandler(new RejectingAbuseLimitHandler())
+            .build();
+    }
+
+    /**
+     * Record the rate limit reported by the headers of a response.
+     *
+     * @param connection Connection the response was received on
+     */
+    void observe(@NonNull HttpURLConnection connection) {
+        if (parent != null) {
+            parent.observe(connection);
+            return;
+        }
+
+        long remaining = header(connection, "X-RateLimit-Remaining");
+        long reset = header(connection, "X-RateLimit-Reset");
+
+        if (remaining >= 0 && reset >= 0) {
+            quota = new Quota((int) remaining, TimeUnit.SECONDS.toMillis(reset));
+        }
+
+        long retryAfter = header(connection, "Retry-After");
+
+        if (retryAfter >= 0) {
+            pausedUntil.accumulateAndGet(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfter), Math::max);
+        }
+    }
+
+    /**
+     * Perform a request which does not modify any state.
+     *
+     * @param call The request
+     * @param <T>  The type returned by the request
+     * @return The result of the request
+     */
+    public <T> T read(@NonNull IOFunction<T> call) {
+        return execute(call, false);
+    }
+
+    /**
+     * Perform a request which modifies state, and is therefore subject to the secondary rate limits.
+     *
+     * @param call The request
+     * @param <T>  The type returned by the request
+     * @return The result of the request
+     */
+    public <T> T write(@NonNull IOFunction<T> call) {
+        return execute(call, true);
+    }
+
+    /**
+     * Read every page of a listing, with each page being scheduled as a separate request.
+     *
+     * @param iterable The listing to read
+     * @param pageSize The number of items to request per page
+     * @param consumer Callback invoked with each page, in order
+     * @param <T>      The type of item in the listing
+     */
+    public <T> void list(@NonNull PagedIterable<T> iterable, int pageSize, @NonNull Consumer<List<T>> consumer) {
+        PagedIterator<T> iterator = iterable.withPageSize(pageSize).iterator();
+
+        List<T> page;
+
+        // note: the iterator fetches the next page lazily in hasNext(), so that call needs to be scheduled too
+        while ((page = read(() -> iterator.hasNext() ? iterator.nextPage() : null)) != null) {
+            consumer.accept(page);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public Duration getThrottleTime() {
+        return Duration.ofNanos(throttleNanos.get());
+    }
+
+    /**
+     * @return The number of requests remaining in the primary rate limit, or -1 if it is not known yet
+     */
+    public int getRateLimitRemaining() {
+        if (parent != null) {
+            return parent.getRateLimitRemaining();
+        }
+
+        Quota limit = quota;
+        return limit == null ? -1 : limit.getRemaining();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %d retries, %s spent throttled, max queue depth %d, %d requests remaining in rate limit",
+            getRequests(), getRetries(), getThrottleTime(), getMaxQueueDepth(), getRateLimitRemaining());
+    }
+
+    private <T> T execute(IOFunction<T> call, boolean write) {
+        return parent == null ? execute(call, write, null) : parent.execute(call, write, this);
+    }
+
+    /**
+     * @param account Account the request is made through, whose statistics are updated along with this scheduler's
+     */
+    private <T> T execute(IOFunction<T> call, boolean write, RequestScheduler account) {
+        for (int attempt = 1; ; attempt++) {
+            // waits happen before taking a permit, so that a throttled request doesn't hold back the others
+            if (write) {
+                paceWrite();
+            }
+
+            awaitQuota();
+
+            acquire();
+
+            long backoff;
+
+            try {
+                requests.incrementAndGet();
+
+                if (account != null) {
+                    account.requests.incrementAndGet();
+                }
+
+                Metrics.counter("github.scheduler.requests", "type", write ? "write" : "read").increment();
+                return call.invoke();
+            } catch (IOException | RuntimeException e) {
+                HttpException rateLimited = findRateLimitFailure(e);
+
+                if (rateLimited == null || attempt >= MAX_ATTEMPTS) {
+                    throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+                }
+
+                backoff = backoffMillis(attempt);
+                log.warn("Request was rejected by the rate limit ({} {}), retrying in {}ms (attempt {} of {})",
+                    rateLimited.getResponseCode(), rateLimited.getResponseMessage(), backoff, attempt, MAX_ATTEMPTS);
+
+                retries.incrementAndGet();
+
+                if (account != null) {
+                    account.retries.incrementAndGet();
+                }
+
+                Metrics.counter("github.scheduler.retries", "status", Integer.toString(rateLimited.getResponseCode())).increment();
+            } finally {
+                permits.release();
+            }
+
+            throttle(backoff);
+        }
+    }
+
+    private void acquire() {
+        int depth = queueDepth.incrementAndGet();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to make request", e);
+        } finally {
+            queueDepth.decrementAndGet();
+        }
+    }
+
+    private void paceWrite() {
+        long delay;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextWriteNanos);
+            nextWriteNanos = start + writeIntervalNanos;
+            delay = start - now;
+        }
+
+        if (delay > 0) {
+            throttle(TimeUnit.NANOSECONDS.toMillis(delay));
+        }
+    }
+
+    private void awaitQuota() {
+        long paused = pausedUntil.get() - System.currentTimeMillis();
+
+        if (paused > 0) {
+            log.warn("Github asked for requests to be paused, waiting {}ms", paused);
+            throttle(paused);
+        }
+
+        Quota limit = quota;
+
+        if (limit == null || limit.getRemaining() > quotaReserve) {
+            return;
+        }
+
+        long wait = millisUntil(limit.getResetMillis());
+
+        if (wait > 0) {
+            log.warn("Only {} requests remain in the rate limit, waiting {}ms for it to reset", limit.getRemaining(), wait);
+            throttle(wait);
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        Quota limit = quota;
+
+        // if the primary limit has been exhausted, nothing will succeed until it resets
+        if (limit != null && limit.getRemaining() <= 0) {
+            return Math.max(millisUntil(limit.getResetMillis()), RESET_SLACK_MILLIS);
+        }
+
+        long paused = pausedUntil.get() - System.currentTimeMillis();
+
+        if (paused > 0) {
+            return paused;
+        }
+
+        return Math.min(MAX_BACKOFF_MILLIS, TimeUnit.SECONDS.toMillis(1L << (attempt - 1)));
+    }
+
+    private void throttle(long millis) {
+        long start = System.nanoTime();
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while throttled", e);
+        } finally {
+            long throttled = System.nanoTime() - start;
+            throttleNanos.addAndGet(throttled);
+            Metrics.timer("github.scheduler.throttle").record(throttled, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static long millisUntil(long epochMillis) {
+        return epochMillis - System.currentTimeMillis() + RESET_SLACK_MILLIS;
+    }
+
+    /**
+     * @return The value of a numeric header of the response, or -1 if it is missing or not a number
+     */
+    private static long header(HttpURLConnection connection, String name) {
+        String value = connection.getHeaderField(name);
+
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static HttpException findRateLimitFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (!(cause instanceof HttpException)) {
+                continue;
+            }
+
+            HttpException http = (HttpException) cause;
+
+            if (http instanceof RateLimitedException || http.getResponseCode() == 429) {
+                return http;
+            }
+
+            String message = String.valueOf(http.getMessage()).toLowerCase(Locale.ROOT);
+
+            if (http.getResponseCode() == HttpURLConnection.HTTP_FORBIDDEN && (message.contains("rate limit") || message.contains("abuse"))) {
+                return http;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Record the limit reported by a rejected response, and fail the request with an exception which
+     * {@link #execute} retries once its permit has been released and the limit allows.
+     */
+    private IOException rejected(IOException e, HttpURLConnection connection) throws IOException {
+        observe(connection);
+        return new RateLimitedException(e.getMessage(), connection.getResponseCode(), connection.getResponseMessage(), String.valueOf(connection.getURL()), e);
+    }
+
+    private class RejectingRateLimitHandler extends RateLimitHandler {
+
+        @Override
+        public void onError(IOException e, HttpURLConnection uc) throws IOException {
+            throw rejected(e, uc);
+        }
+    }
+
+    private class RejectingAbuseLimitHandler extends AbuseLimitHandler {
+
+        @Override
+        public void onError(IOException e, HttpURLConnection uc) throws IOException {
+            throw rejected(e, uc);
+        }
+    }
+
+    @Value
+    private static class Quota {
+
+        private final int remaining;
+
+        /**
+         * Epoch millisecond at which the rate limit resets
+         */
+        private final long resetMillis;
+
+    }
+}
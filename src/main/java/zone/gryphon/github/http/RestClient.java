@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import lombok.Value;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.HttpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal client for the parts of the Github REST API which are not exposed by the Github library, and for requests
+ * which only need a few fields of a resource, rather than the full objects the Github library populates.
+ */
+public class RestClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Pattern NEXT = Pattern.compile("<([^>]+)>;\\s*rel=\"next\"");
+
+    private static final Pattern LAST = Pattern.compile("<([^>]+)>;\\s*rel=\"last\"");
+
+    private final String apiUrl;
+
+    private final String authorization;
+
+    private final HttpConnector connector;
+
+    private final RequestScheduler scheduler;
+
+    /**
+     * @param apiUrl        URL of the Github REST API
+     * @param authorization Value of the "Authorization" header to send, or null to make anonymous requests
+     * @param connector     Connector used to open connections
+     */
+    public RestClient(@NonNull String apiUrl, String authorization, @NonNull HttpConnector connector) {
+        this(apiUrl, authorization, connector, null);
+    }
+
+    /**
+     * @param apiUrl        URL of the Github REST API
+     * @param authorization Value of the "Authorization" header to send, or null to make anonymous requests
+     * @param connector     Connector used to open connections
+     * @param scheduler     Scheduler to report the rate limit of every response to, or null for none
+     */
+    public RestClient(@NonNull String apiUrl, String authorization, @NonNull HttpConnector connector, RequestScheduler scheduler) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.authorization = authorization;
+        this.connector = connector;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param path Path of the resource, relative to the API root
+     * @return Absolute URL of the resource
+     * @throws IOException If the URL is malformed
+     */
+    public URL url(@NonNull String path) throws IOException {
+        return new URL(apiUrl + path);
+    }
+
+    /**
+     * Fetch a single page of a resource.
+     *
+     * @param url The URL to fetch
+     * @return The page
+     * @throws IOException If the request failed
+     */
+    public Page get(@NonNull URL url) throws IOException {
+        return get(url, "application/vnd.github.v3+json");
+    }
+
+    /**
+     * Fetch a single page of a resource, in a specific representation.
+     *
+     * @param url    The URL to fetch
+     * @param accept The media type to request
+     * @return The page
+     * @throws IOException If the request failed
+     */
+    public Page get(@NonNull URL url, @NonNull String accept) throws IOException {
+        HttpURLConnection connection = connector.connect(url);
+        connection.setRequestMethod("GET");
+        connection.setRequestProperty("Accept", accept);
+
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+
+        int code = connection.getResponseCode();
+
+        if (scheduler != null) {
+            scheduler.observe(connection);
+        }
+
+        if (code != HttpURLConnection.HTTP_OK) {
+            // the message of the error is what tells a rate limit apart from a lack of permission
+            throw new HttpException(HttpResponses.readError(connection), code, connection.getResponseMessage(), url.toString());
+        }
+
+        JsonNode body;
+
+        try (InputStream in = connection.getInputStream()) {
+            body = MAPPER.readTree(in);
+        }
+
+        String link = connection.getHeaderField("Link");
+        return new Page(body, link(NEXT, link), link(LAST, link));
+    }
+
+    /**
+     * Modify a resource.
+     *
+     * @param method The request method, e.g. "PUT" or "DELETE"
+     * @param url    The URL of the resource
+     * @param body   The body to send, or null to send none
+     * @throws IOException If the request failed
+     */
+    public void send(@NonNull String method, @NonNull URL url, JsonNode body) throws IOException {
+        HttpURLConnection connection = connector.connect(url);
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
+
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+
+            try (OutputStream out = connection.getOutputStream()) {
+                MAPPER.writeValue(out, body);
+            }
+        }
+
+        int code = connection.getResponseCode();
+
+        if (scheduler != null) {
+            scheduler.observe(connection);
+        }
+
+        if (code / 100 != 2) {
+            // the message of the error is what tells a secondary rate limit apart from a lack of permission
+            throw new HttpException(HttpResponses.readError(connection), code, connection.getResponseMessage(), url.toString());
+        }
+
+        // the response isn't needed, but must be read so that the connection can be reused
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    private static URL link(Pattern relation, String link) throws IOException {
+        if (link == null) {
+            return null;
+        }
+
+        Matcher matcher = relation.matcher(link);
+        return matcher.find() ? new URL(matcher.group(1)) : null;
+    }
+
+    @Value
+    public static class Page {
+
+        /**
+         * The body of the response
+         */
+        private final JsonNode body;
+
+        /**
+         * URL of the next page, or null if this is the last one
+         */
+        private final URL next;
+
+        /**
+         * URL of the last page, or null if this is the last one or the listing does not link to it
+         */
+        private final URL last;
+
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.incremental;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hashing;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import zone.gryphon.github.configuration.Configuration;
+import zone.gryphon.github.configuration.OrganizationConfiguration;
+import zone.gryphon.github.configuration.TeamConfiguration;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Content hashes of configuration, which only change when the meaning of the configuration changes.
+ * <p>
+ * The configuration is serialized to JSON with object keys sorted, and arrays (which are all sets) sorted,
+ * so reordering entries in the configuration file does not change the hash.
+ */
+@UtilityClass
+public final class ConfigurationHashes {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static String hash(@NonNull TeamConfiguration team) {
+        return hash(canonicalize(MAPPER.valueToTree(team)));
+    }
+
+    /**
+     * @param organization The organization
+     * @return Hash covering the configuration of every team in the organization
+     */
+    public static String hash(@NonNull OrganizationConfiguration organization) {
+        ObjectNode teams = JsonNodeFactory.instance.objectNode();
+
+        new TreeMap<>(organization.getTeams()).forEach((name, team) -> teams.put(name, hash(team)));
+
+        return hash(teams);
+    }
+
+    /**
+     * @param configuration The configuration
+     * @return Hash covering the configuration of every organization
+     */
+    public static String hash(@NonNull Configuration configuration) {
+        ObjectNode organizations = JsonNodeFactory.instance.objectNode();
+
+        new TreeMap<>(configuration.getOrganizations()).forEach((name, organization) -> organizations.put(name, hash(organization)));
+
+        return hash(organizations);
+    }
+
+    private static String hash(JsonNode node) {
+        try {
+            return Hashing.sha256().hashBytes(MAPPER.writeValueAsBytes(node)).toString();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize configuration", e);
+        }
+    }
+
+    private static JsonNode canonicalize(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode out = JsonNodeFactory.instance.objectNode();
+            Map<String, JsonNode> fields = new TreeMap<>();
+
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+
+                // absent and null fields mean the same thing
+                if (!field.getValue().isNull()) {
+                    fields.put(field.getKey(), canonicalize(field.getValue()));
+                }
+            }
+
+            out.setAll(fields);
+            return out;
+        }
+
+        if (node.isArray()) {
+            List<JsonNode> elements = new ArrayList<>();
+            node.forEach(element -> elements.add(canonicalize(element)));
+            elements.sort(Comparator.comparing(JsonNode::toString));
+
+            ArrayNode out = JsonNodeFactory.instance.arrayNode();
+            out.addAll(elements);
+            return out;
+        }
+
+        return node;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.incremental;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NonNull;
+import zone.gryphon.github.configuration.Configuration;
+import zone.gryphon.github.configuration.OrganizationConfiguration;
+import zone.gryphon.github.configuration.TeamConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Hashes of the configuration as of the last successful run, used to skip teams whose configuration has not changed.
+ */
+@Data
+public class IncrementalState {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Epoch milliseconds of the last successful run which reconciled every team, or 0 if there has never been one
+     */
+    private long lastFullSweep;
+
+    /**
+     * Map of organization name -&gt; hashes of the organization's configuration
+     */
+    private Map<String, OrganizationHashes> organizations = new HashMap<>();
+
+    @Data
+    public static class OrganizationHashes {
+
+        /**
+         * Hash of the configuration of the whole organization
+         */
+        private String hash;
+
+        /**
+         * Map of team name -&gt; hash of the team's configuration
+         */
+        private Map<String, String> teams = new HashMap<>();
+
+    }
+
+    /**
+     * @param configuration The current configuration
+     * @return State recording the hashes of the given configuration
+     */
+    public static IncrementalState of(@NonNull Configuration configuration) {
+        IncrementalState out = new IncrementalState();
+        out.setOrganizations(new TreeMap<>());
+
+        for (Map.Entry<String, OrganizationConfiguration> organization : configuration.getOrganizations().entrySet()) {
+            OrganizationHashes hashes = new OrganizationHashes();
+            hashes.setHash(ConfigurationHashes.hash(organization.getValue()));
+            hashes.setTeams(new TreeMap<>());
+
+            for (Map.Entry<String, TeamConfiguration> team : organization.getValue().getTeams().entrySet()) {
+                hashes.getTeams().put(team.getKey(), ConfigurationHashes.hash(team.getValue()));
+            }
+
+            out.getOrganizations().put(organization.getKey(), hashes);
+        }
+
+        return out;
+    }
+
+    /**
+     * @return True if the given organization's configuration is unchanged
+     */
+    public boolean isUnchanged(@NonNull String organization, @NonNull OrganizationConfiguration configuration) {
+        OrganizationHashes hashes = organizations.get(organization);
+        return hashes != null && Objects.equals(hashes.getHash(), ConfigurationHashes.hash(configuration));
+    }
+
+    /**
+     * @return True if the given team's configuration is unchanged
+     */
+    public boolean isUnchanged(@NonNull String organization, @NonNull String team, @NonNull TeamConfiguration configuration) {
+        OrganizationHashes hashes = organizations.get(organization);
+        return hashes != null && Objects.equals(hashes.getTeams().get(team), ConfigurationHashes.hash(configuration));
+    }
+
+    public static IncrementalState read(@NonNull File file) throws IOException {
+        return MAPPER.readValue(file, IncrementalState.class);
+    }
+
+    public void write(@NonNull File file) throws IOException {
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file, this);
+    }
+
+}
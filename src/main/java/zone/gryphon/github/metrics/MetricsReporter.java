@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Collects every meter recorded through the global {@link Metrics} registry, and reports them in the Prometheus
+ * text format.
+ * <p>
+ * Meters are only collected while the reporter is open, so it should be created before anything is recorded.
+ */
+@Slf4j
+public class MetricsReporter implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    private final File file;
+
+    private final URL pushUrl;
+
+    /**
+     * @param file    File to write the metrics to when reporting, or null
+     * @param pushUrl URL of a Prometheus push gateway group to push the metrics to when reporting, or null
+     */
+    public MetricsReporter(File file, URL pushUrl) {
+        this.file = file;
+        this.pushUrl = pushUrl;
+        Metrics.addRegistry(registry);
+    }
+
+    /**
+     * @return Every meter recorded so far, in the Prometheus text format
+     */
+    public String scrape() {
+        return registry.scrape();
+    }
+
+    /**
+     * Write the metrics to the configured file, and push them to the configured push gateway.
+     * Failures are logged rather than thrown, since metrics should never cause a run to fail.
+     */
+    public void report() {
+        String metrics = scrape();
+        log.debug("Metrics:\n{}", metrics);
+
+        if (file != null) {
+            try {
+                Files.write(file.toPath(), metrics.getBytes(StandardCharsets.UTF_8));
+                log.info("Wrote metrics to \"{}\"", file.getAbsolutePath());
+            } catch (IOException e) {
+                log.warn("Failed to write metrics to \"{}\"", file.getAbsolutePath(), e);
+            }
+        }
+
+        if (pushUrl != null) {
+            try {
+                push(metrics);
+            } catch (IOException e) {
+                log.warn("Failed to push metrics to \"{}\"", pushUrl, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Metrics.removeRegistry(registry);
+        registry.close();
+    }
+
+    private void push(String metrics) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) pushUrl.openConnection();
+
+        try {
+            // PUT replaces every metric in the group, so meters which no longer exist don't linger
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(metrics.getBytes(StandardCharsets.UTF_8));
+            }
+
+            int status = connection.getResponseCode();
+
+            if (status / 100 != 2) {
+                throw new IOException(String.format("Push gateway responded with %d %s", status, connection.getResponseMessage()));
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+}
@@ -15,6 +15,11 @@
 
 package zone.gryphon.github.model;
 
+/**
+ * Stored by ordinal in binary state snapshots, see {@link zone.gryphon.github.snapshot.BinarySnapshotFormat}, and in
+ * two bits per repository while planning, which limits it to four values, see
+ * {@link zone.gryphon.github.planning.PermissionMatrix}.
+ */
 public enum RepositoryPermission {
 
     /**
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.model;
+
+public enum RepositoryVisibility {
+
+    /**
+     * Visible to everyone
+     */
+    PUBLIC,
+
+    /**
+     * Visible only to those who have been granted access
+     */
+    PRIVATE,
+
+    /**
+     * Visible to every member of the enterprise which owns the repository
+     */
+    INTERNAL;
+
+    /**
+     * @param visibility Visibility as reported by the REST or GraphQL API, case insensitive; may be null
+     * @param isPrivate  Whether the repository is private, for APIs which don't report the visibility, and for
+     *                   visibilities which aren't known
+     * @return The visibility
+     */
+    public static RepositoryVisibility of(String visibility, boolean isPrivate) {
+        if (visibility != null && !visibility.isEmpty()) {
+            for (RepositoryVisibility candidate : values()) {
+                if (candidate.name().equalsIgnoreCase(visibility)) {
+                    return candidate;
+                }
+            }
+
+            // a visibility Github added since, which would otherwise fail loading the whole organization
+        }
+
+        return isPrivate ? PRIVATE : PUBLIC;
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.model;
+
+/**
+ * Stored by ordinal in binary state snapshots, see {@link zone.gryphon.github.snapshot.BinarySnapshotFormat}.
+ */
+public enum TeamRole {
+
+    /**
+     * Not a member of the team
+     */
+    NONE,
+
+    /**
+     * Member of the team, benefiting from the access it grants
+     */
+    MEMBER,
+
+    /**
+     * Maintainer of the team, able to edit its membership
+     */
+    MAINTAINER
+
+}
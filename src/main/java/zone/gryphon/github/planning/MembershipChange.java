@@ -13,22 +13,25 @@
  * limitations under the License.
  */
 
-package zone.gryphon.github.utilities;
+package zone.gryphon.github.planning;
 
 import lombok.NonNull;
-import lombok.experimental.UtilityClass;
+import lombok.Value;
+import zone.gryphon.github.model.TeamRole;
 
-import java.io.IOException;
+/**
+ * Change to the role a user has on a team.
+ */
+@Value
+public class MembershipChange {
+
+    @NonNull
+    private final String user;
 
-@UtilityClass
-public final class IOUtilities {
+    @NonNull
+    private final TeamRole from;
 
-    public static <T> T unwrap(@NonNull IOFunction<T> function) {
-        try {
-            return function.invoke();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
+    @NonNull
+    private final TeamRole to;
 
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.planning;
+
+import lombok.NonNull;
+import zone.gryphon.github.model.RepositoryPermission;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Desired and actual repository permissions of the teams in an organization.
+ * <p>
+ * Repository and team names are interned to int IDs, and permissions are stored as 2-bit cells (the
+ * {@link RepositoryPermission} ordinal) packed 32 to a {@code long}, so whole rows can be filled and compared a word
+ * at a time. Each team has three rows: the desired permissions, a mask of which repositories are managed by the
+ * configuration at all, and the actual permissions. A cell only holds four values, so {@link RepositoryPermission}
+ * must never have more than four, wherever new ones are added.
+ * <p>
+ * Interning teams is thread safe; a single team's rows must only be modified by one thread at a time.
+ */
+public final class PermissionMatrix {
+
+    private static final int CELLS_PER_WORD = Long.SIZE / 2;
+
+    /**
+     * Low bit of every cell
+     */
+    private static final long LOW_BITS = 0x5555_5555_5555_5555L;
+
+    private static final RepositoryPermission[] PERMISSIONS = RepositoryPermission.values();
+
+    /**
+     * Repository names, sorted so that iterating over IDs visits repositories in name order
+     */
+    private final String[] repositories;
+
+    private final Map<String, Integer> repositoryIds;
+
+    private final int words;
+
+    /**
+     * Mask of the cells in the last word which correspond to repositories
+     */
+    private final long lastWordMask;
+
+    private final Map<String, Integer> teamIds = new HashMap<>();
+
+    private final List<long[][]> rows = new ArrayList<>();
+
+    /**
+     * Receives the repositories whose desired permission differs from the actual permission.
+     */
+    @FunctionalInterface
+    public interface ChangeConsumer {
+
+        void accept(String repository, RepositoryPermission from, RepositoryPermission to);
+
+    }
+
+    public PermissionMatrix(@NonNull Collection<String> repositories) {
+        this.repositories = repositories.toArray(new String[0]);
+        Arrays.sort(this.repositories);
+
+        this.repositoryIds = new HashMap<>((int) (this.repositories.length / 0.75f) + 1);
+
+        for (int i = 0; i < this.repositories.length; i++) {
+            repositoryIds.put(this.repositories[i], i);
+        }
+
+        this.words = (this.repositories.length + CELLS_PER_WORD - 1) / CELLS_PER_WORD;
+
+        int remainder = this.repositories.length % CELLS_PER_WORD;
+        this.lastWordMask = remainder == 0 ? -1L : (1L << (remainder * 2)) - 1;
+    }
+
+    public int getRepositoryCount() {
+        return repositories.length;
+    }
+
+    /**
+     * @param name The name of the repository
+     * @return The ID of the repository, or -1 if it is not in the organization
+     */
+    public int repository(@NonNull String name) {
+        Integer id = repositoryIds.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Intern the given team name, allocating rows for it if it has not been seen before.
+     *
+     * @param name The name of the team
+     * @return The ID of the team
+     */
+    public synchronized int team(@NonNull String name) {
+        return teamIds.computeIfAbsent(name, key -> {
+            rows.add(new long[][]{new long[words], new long[words], new long[words]});
+            return rows.size() - 1;
+        });
+    }
+
+    /**
+     * Manage every repository, with the given permission.
+     */
+    public void applyDefault(int team, @NonNull RepositoryPermission permission) {
+        long[][] row = rows(team);
+        fill(row[0], spread(permission));
+        fill(row[1], spread(RepositoryPermission.ADMIN));
+    }
+
+    /**
+     * Manage only the given repositories, with the given permission.
+     *
+     * @param repositories IDs of the repositories
+     */
+    public void applyDefault(int team, @NonNull BitSet repositories, @NonNull RepositoryPermission permission) {
+        long[][] row = rows(team);
+        Arrays.fill(row[0], 0L);
+        Arrays.fill(row[1], 0L);
+
+        for (int id = repositories.nextSetBit(0); id >= 0 && id < this.repositories.length; id = repositories.nextSetBit(id + 1)) {
+            set(row[0], id, permission.ordinal());
+            set(row[1], id, RepositoryPermission.ADMIN.ordinal());
+        }
+    }
+
+    /**
+     * Stop managing the given repositories.
+     *
+     * @param repositories IDs of the repositories
+     */
+    public void exclude(int team, @NonNull BitSet repositories) {
+        long[][] row = rows(team);
+
+        for (int id = repositories.nextSetBit(0); id >= 0 && id < this.repositories.length; id = repositories.nextSetBit(id + 1)) {
+            set(row[0], id, 0);
+            set(row[1], id, 0);
+        }
+    }
+
+    /**
+     * Replace the desired permission of the given repositories; repositories which are not managed are unaffected.
+     *
+     * @param repositories IDs of the repositories
+     */
+    public void override(int team, @NonNull BitSet repositories, @NonNull RepositoryPermission permission) {
+        long[][] row = rows(team);
+
+        for (int id = repositories.nextSetBit(0); id >= 0 && id < this.repositories.length; id = repositories.nextSetBit(id + 1)) {
+            if (get(row[1], id) != 0) {
+                set(row[0], id, permission.ordinal());
+            }
+        }
+    }
+
+    /**
+     * Record the permissions the team actually has; repositories which are not in the organization are ignored.
+     */
+    public void setActual(int team, @NonNull Map<String, RepositoryPermission> actual) {
+        long[] row = rows(team)[2];
+        Arrays.fill(row, 0L);
+
+        for (Map.Entry<String, RepositoryPermission> permission : actual.entrySet()) {
+            int id = repository(permission.getKey());
+
+            if (id >= 0) {
+                set(row, id, permission.getValue().ordinal());
+            }
+        }
+    }
+
+    /**
+     * Compare the desired permissions of the team to its actual permissions.
+     *
+     * @param changes Receives every managed repository whose permission differs, in name order
+     * @return The number of managed repositories whose permission does not differ
+     */
+    public int diff(int team, @NonNull ChangeConsumer changes) {
+        long[][] row = rows(team);
+        long[] desired = row[0];
+        long[] managed = row[1];
+        long[] actual = row[2];
+
+        int unchanged = 0;
+
+        for (int word = 0; word < words; word++) {
+            long managedCells = managed[word] & LOW_BITS;
+            long difference = desired[word] ^ actual[word];
+            long changed = (difference | (difference >>> 1)) & managedCells;
+
+            unchanged += Long.bitCount(managedCells) - Long.bitCount(changed);
+
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                int id = word * CELLS_PER_WORD + bit / 2;
+
+                changes.accept(
+                    repositories[id],
+                    PERMISSIONS[(int) (actual[word] >>> bit) & 0b11],
+                    PERMISSIONS[(int) (desired[word] >>> bit) & 0b11]);
+
+                changed &= changed - 1;
+            }
+        }
+
+        return unchanged;
+    }
+
+    private synchronized long[][] rows(int team) {
+        return rows.get(team);
+    }
+
+    private void fill(long[] row, long value) {
+        if (words == 0) {
+            return;
+        }
+
+        Arrays.fill(row, value);
+        row[words - 1] &= lastWordMask;
+    }
+
+    private static long spread(RepositoryPermission permission) {
+        return LOW_BITS * permission.ordinal();
+    }
+
+    private static int get(long[] row, int id) {
+        return (int) (row[id / CELLS_PER_WORD] >>> ((id % CELLS_PER_WORD) * 2)) & 0b11;
+    }
+
+    private static void set(long[] row, int id, int value) {
+        int shift = (id % CELLS_PER_WORD) * 2;
+        int word = id / CELLS_PER_WORD;
+        row[word] = (row[word] & ~(0b11L << shift)) | ((long) value << shift);
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.planning;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Every change needed to bring the configured teams to their configured state.
+ */
+@Value
+public class Plan {
+
+    @NonNull
+    private final List<TeamPlan> teams;
+
+    public boolean isEmpty() {
+        return teams.stream().allMatch(TeamPlan::isEmpty);
+    }
+
+    public int getChangeCount() {
+        return teams.stream().mapToInt(TeamPlan::getChangeCount).sum();
+    }
+
+}
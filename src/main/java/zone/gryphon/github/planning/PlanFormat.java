@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.planning;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.NonNull;
+
+public enum PlanFormat {
+
+    /**
+     * Human readable text, grouped by organization and team
+     */
+    TEXT {
+        @Override
+        public String format(@NonNull Plan plan) {
+            StringBuilder builder = new StringBuilder();
+            String organization = null;
+
+            for (TeamPlan team : plan.getTeams()) {
+
+                if (team.isEmpty()) {
+                    continue;
+                }
+
+                if (!team.getOrganization().equals(organization)) {
+                    organization = team.getOrganization();
+                    builder.append("organization \"").append(organization).append("\"\n");
+                }
+
+                builder.append("  team \"").append(team.getTeam()).append("\"\n");
+
+                for (MembershipChange change : team.getMembership()) {
+                    builder.append(String.format("    user       \"%s\": %s -> %s%n", change.getUser(), change.getFrom(), change.getTo()));
+                }
+
+                for (RepositoryChange change : team.getRepositories()) {
+                    builder.append(String.format("    repository \"%s\": %s -> %s%n", change.getRepository(), change.getFrom(), change.getTo()));
+                }
+            }
+
+            builder.append(String.format("%d change%s across %d team%s%n",
+                plan.getChangeCount(), plan.getChangeCount() == 1 ? "" : "s", plan.getTeams().size(), plan.getTeams().size() == 1 ? "" : "s"));
+
+            return builder.toString();
+        }
+    },
+
+    /**
+     * JSON document of organization -&gt; team -&gt; repository/user -&gt; change
+     */
+    JSON {
+        @Override
+        public String format(@NonNull Plan plan) {
+            ObjectNode root = MAPPER.createObjectNode();
+            root.put("changes", plan.getChangeCount());
+
+            ObjectNode organizations = root.putObject("organizations");
+
+            for (TeamPlan team : plan.getTeams()) {
+                ObjectNode organization = organizations.has(team.getOrganization())
+                    ? (ObjectNode) organizations.get(team.getOrganization())
+                    : organizations.putObject(team.getOrganization());
+
+                ObjectNode node = organization.putObject(team.getTeam());
+
+                ObjectNode users = node.putObject("users");
+
+                for (MembershipChange change : team.getMembership()) {
+                    users.putObject(change.getUser())
+                        .put("from", change.getFrom().name())
+                        .put("to", change.getTo().name());
+                }
+
+                ObjectNode repositories = node.putObject("repositories");
+
+                for (RepositoryChange change : team.getRepositories()) {
+                    repositories.putObject(change.getRepository())
+                        .put("from", change.getFrom().name())
+                        .put("to", change.getTo().name());
+                }
+            }
+
+            try {
+                return MAPPER.writeValueAsString(root) + System.lineSeparator();
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize plan", e);
+            }
+        }
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public abstract String format(Plan plan);
+
+}
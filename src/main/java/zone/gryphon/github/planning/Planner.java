@@ -0,0 +1,273 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.planning;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import zone.gryphon.github.cache.CachingOrganization;
+import zone.gryphon.github.cache.CachingTeam;
+import zone.gryphon.github.cache.OrganizationRegistry;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.configuration.Configuration;
+import zone.gryphon.github.configuration.OrganizationConfiguration;
+import zone.gryphon.github.configuration.RepositorySelector;
+import zone.gryphon.github.configuration.TeamConfiguration;
+import zone.gryphon.github.configuration.TeamMembershipConfiguration;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+import zone.gryphon.github.utilities.CollectionUtilities;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static zone.gryphon.github.model.RepositoryPermission.NONE;
+
+/**
+ * Computes the difference between the configured state of teams and their actual state.
+ * <p>
+ * Planning makes no mutating calls; it only reads state which is expected to have been loaded already.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class Planner {
+
+    /**
+     * Maximum number of explicitly requested repositories to look up by name; a page of the organization's
+     * repository listing covers 100 repositories for the cost of a single request
+     */
+    private static final int MAX_LOOKUPS = 20;
+
+    @NonNull
+    private final OrganizationRegistry organizations;
+
+    /**
+     * Resolves a configured user name to the login of the user, or empty if the user does not exist
+     */
+    @NonNull
+    private final Function<String, Optional<String>> users;
+
+    /**
+     * Map of organization name -&gt; permissions and repository selectors of the teams in that organization
+     */
+    private final Map<String, Index> indexes = new ConcurrentHashMap<>();
+
+    @Value
+    private static class Index {
+
+        private final PermissionMatrix matrix;
+
+        private final SelectorIndex selectors;
+
+    }
+
+    public Plan plan(@NonNull Configuration configuration) {
+        List<TeamPlan> teams = new ArrayList<>();
+
+        for (Map.Entry<String, OrganizationConfiguration> organization : configuration.getOrganizations().entrySet()) {
+            CachingOrganization cachingOrganization = organizations.get(organization.getKey());
+            prepare(cachingOrganization, organization.getValue().getTeams().values());
+
+            for (Map.Entry<String, TeamConfiguration> team : organization.getValue().getTeams().entrySet()) {
+                plan(cachingOrganization, team.getKey(), team.getValue()).ifPresent(teams::add);
+            }
+        }
+
+        return new Plan(teams);
+    }
+
+    /**
+     * Register the repository selectors of the given teams, so that the selectors of all of the teams which need the
+     * index of every repository in the organization are evaluated together, in a single pass over the repositories,
+     * when the first of them is planned. Planning works without this, at the cost of a pass per team.
+     *
+     * @param organization The organization
+     * @param teams        Configuration of the teams which are going to be planned
+     */
+    public void prepare(@NonNull CachingOrganization organization, @NonNull Collection<TeamConfiguration> teams) {
+        List<String> selectors = new ArrayList<>();
+
+        for (TeamConfiguration team : teams) {
+            if (needsRepositoryIndex(team)) {
+                selectors.addAll(CollectionUtilities.nullToEmpty(team.getRepositories()));
+                selectors.addAll(CollectionUtilities.nullToEmpty(team.getExclusions()));
+                selectors.addAll(CollectionUtilities.nullToEmpty(team.getOverrides()).keySet());
+            }
+        }
+
+        if (!selectors.isEmpty()) {
+            index(organization).getSelectors().register(selectors);
+        }
+    }
+
+    public Optional<TeamPlan> plan(@NonNull CachingOrganization organization, @NonNull String teamName, @NonNull TeamConfiguration teamConfiguration) {
+        return plan(organization, teamName, teamConfiguration, true, true);
+    }
+
+    /**
+     * Plan only some aspects of a team; aspects which are not planned are neither loaded nor included in the plan.
+     *
+     * @param members      Whether to plan the membership of the team
+     * @param repositories Whether to plan the repository permissions of the team
+     * @return The plan, or empty if the team does not exist
+     */
+    public Optional<TeamPlan> plan(@NonNull CachingOrganization organization, @NonNull String teamName, @NonNull TeamConfiguration teamConfiguration, boolean members, boolean repositories) {
+        CachingTeam team = organization.getTeam(teamName);
+
+        if (team == null) {
+            log.error("Team \"{}\" under organization \"{}\" does not exist, skipping", teamName, organization.getLogin());
+            return Optional.empty();
+        }
+
+        List<MembershipChange> membershipChanges = new ArrayList<>();
+        int unchangedMembers = 0;
+
+        if (members && teamConfiguration.getMembership() != null) {
+            unchangedMembers = planMembership(team, teamConfiguration.getMembership(), membershipChanges);
+        } else if (members) {
+            log.warn("No membership configuration for team \"{}\"", teamName);
+        }
+
+        List<RepositoryChange> repositoryChanges = new ArrayList<>();
+        int unchangedRepositories = repositories ? planRepositories(organization, team, teamConfiguration, repositoryChanges) : 0;
+
+        return Optional.of(new TeamPlan(organization.getLogin(), teamName, membershipChanges, repositoryChanges, unchangedMembers, unchangedRepositories));
+    }
+
+    private int planMembership(CachingTeam team, TeamMembershipConfiguration membership, List<MembershipChange> out) {
+        Map<String, TeamRole> desired = new TreeMap<>();
+
+        CollectionUtilities.nullToEmpty(membership.getMembers()).forEach(user -> desired.put(user, TeamRole.MEMBER));
+        CollectionUtilities.nullToEmpty(membership.getAdmins()).forEach(user -> desired.put(user, TeamRole.MAINTAINER));
+        CollectionUtilities.nullToEmpty(membership.getBanned()).forEach(user -> desired.put(user, TeamRole.NONE));
+
+        int unchanged = 0;
+
+        for (Map.Entry<String, TeamRole> tuple : desired.entrySet()) {
+            Optional<String> login = users.apply(tuple.getKey());
+
+            if (!login.isPresent()) {
+                log.warn("User \"{}\" does not exist, skipping", tuple.getKey());
+                continue;
+            }
+
+            TeamRole current = team.getRole(login.get());
+
+            if (Objects.equals(current, tuple.getValue())) {
+                log.debug("User \"{}\" already has the expected access to team \"{}\", skipping", tuple.getKey(), team.getName());
+                unchanged++;
+            } else {
+                out.add(new MembershipChange(login.get(), current, tuple.getValue()));
+            }
+        }
+
+        return unchanged;
+    }
+
+    /**
+     * Whether planning the repositories of the given team needs the index of every repository in the organization.
+     * Teams which only manage a short, explicit list of repositories by name look those repositories up by name instead.
+     */
+    public static boolean needsRepositoryIndex(@NonNull TeamConfiguration configuration) {
+        Set<String> requested = CollectionUtilities.nullToEmpty(configuration.getRepositories());
+
+        if (requested.isEmpty() || requested.size() > MAX_LOOKUPS) {
+            return true;
+        }
+
+        return requested.stream().anyMatch(selector -> !RepositorySelector.parse(selector).isName());
+    }
+
+    private int planRepositories(CachingOrganization organization, CachingTeam team, TeamConfiguration configuration, List<RepositoryChange> out) {
+        final RepositoryPermission defaultPermission = Optional.ofNullable(configuration.getPermission()).orElse(NONE);
+        final Set<String> requested = CollectionUtilities.nullToEmpty(configuration.getRepositories());
+
+        final Index index;
+
+        if (needsRepositoryIndex(configuration)) {
+            index = index(organization);
+        } else {
+            // only the requested repositories are managed, so the rest of the organization is irrelevant
+            index = index(requested.stream().map(organization::findRepository).filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList()));
+        }
+
+        final PermissionMatrix matrix = index.getMatrix();
+        final SelectorIndex selectors = index.getSelectors();
+        final int id = matrix.team(team.getName());
+
+        if (requested.isEmpty()) {
+            matrix.applyDefault(id, defaultPermission);
+        } else {
+            BitSet managed = new BitSet(matrix.getRepositoryCount());
+
+            for (String selector : requested) {
+                BitSet matching = selectors.matches(selector);
+
+                if (matching.isEmpty() && RepositorySelector.parse(selector).isName()) {
+                    log.warn("Requested repository \"{}/{}\" does not exist, ignoring", organization.getLogin(), selector);
+                } else if (matching.isEmpty()) {
+                    log.warn("Selector \"{}\" of team \"{}\" matches no repositories in organization \"{}\"", selector, team.getName(), organization.getLogin());
+                }
+
+                managed.or(matching);
+            }
+
+            matrix.applyDefault(id, managed, defaultPermission);
+        }
+
+        for (String exclusion : CollectionUtilities.nullToEmpty(configuration.getExclusions())) {
+            matrix.exclude(id, selectors.matches(exclusion));
+        }
+
+        // in configuration order, so that where several selectors match a repository the last one wins
+        for (Map.Entry<String, RepositoryPermission> override : CollectionUtilities.nullToEmpty(configuration.getOverrides()).entrySet()) {
+            matrix.override(id, selectors.matches(override.getKey()), override.getValue());
+        }
+
+        matrix.setActual(id, team.getPermissions());
+
+        return matrix.diff(id, (repository, from, to) -> out.add(new RepositoryChange(repository, from, to)));
+    }
+
+    /**
+     * @return The shared index of every repository in the organization
+     */
+    private Index index(CachingOrganization organization) {
+        return indexes.computeIfAbsent(organization.getLogin(), key -> index(organization.getRepositories().values()));
+    }
+
+    private static Index index(Collection<RepositoryInfo> repositories) {
+        // sorted the same way as the matrix sorts names, so that the IDs of both agree
+        List<RepositoryInfo> sorted = new ArrayList<>(repositories);
+        sorted.sort(Comparator.comparing(RepositoryInfo::getName));
+
+        PermissionMatrix matrix = new PermissionMatrix(sorted.stream().map(RepositoryInfo::getName).collect(Collectors.toList()));
+        return new Index(matrix, new SelectorIndex(sorted));
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.planning;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A team, and which aspects of it should be reconciled.
+ */
+@Value
+public class ReconciliationTarget {
+
+    @NonNull
+    private final String organization;
+
+    /**
+     * Name of the team, or null for every configured team in the organization
+     */
+    private final String team;
+
+    private final boolean members;
+
+    private final boolean repositories;
+
+    public static ReconciliationTarget all(@NonNull String organization, @NonNull String team) {
+        return new ReconciliationTarget(organization, team, true, true);
+    }
+
+    /**
+     * @param other Another target for the same team
+     * @return Target covering every aspect covered by either target
+     */
+    public ReconciliationTarget merge(@NonNull ReconciliationTarget other) {
+        return new ReconciliationTarget(organization, team, members || other.members, repositories || other.repositories);
+    }
+
+}
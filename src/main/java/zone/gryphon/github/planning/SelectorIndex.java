@@ -0,0 +1,228 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package zone.gryphon.github.planning;
+
+import lombok.NonNull;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.configuration.RepositorySelector;
+import zone.gryphon.github.model.RepositoryVisibility;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * {@link RepositorySelector}s compiled into a single index, so that each repository of an organization is visited
+ * once no matter how many selectors the teams of the organization use, rather than once per selector per team.
+ * <p>
+ * Names are matched with a hash lookup, prefixes by walking a trie of every prefix along the name of the repository,
+ * topics with a hash lookup per topic, and archived state and visibility with a table lookup. Only globs which are not
+ * simple prefixes, and regular expressions, are matched one at a time.
+ * <p>
+ * Selectors which are {@link #register registered} up front are evaluated together, in a single pass, the first time
+ * any of them is needed; any other selector is evaluated in a pass of its own the first time it is needed. Every
+ * selector is evaluated at most once.
+ */
+public final class SelectorIndex {
+
+    /**
+     * Repositories, in order of their IDs
+     */
+    private final List<RepositoryInfo> repositories;
+
+    /**
+     * Map of selector -&gt; IDs of the repositories which it matches
+     */
+    private final Map<String, BitSet> matches = new HashMap<>();
+
+    private final Set<String> pending = new LinkedHashSet<>();
+
+    /**
+     * @param repositories The repositories to match, in order of their IDs in the {@link PermissionMatrix}
+     */
+    public SelectorIndex(@NonNull List<RepositoryInfo> repositories) {
+        this.repositories = repositories;
+    }
+
+    /**
+     * Register selectors to be evaluated in the next pass.
+     *
+     * @param selectors The selectors, which must be valid
+     */
+    public synchronized void register(@NonNull Collection<String> selectors) {
+        for (String selector : selectors) {
+            if (!matches.containsKey(selector)) {
+                pending.add(selector);
+            }
+        }
+    }
+
+    /**
+     * @param selector The selector, which must be valid
+     * @return IDs of the repositories which the selector matches; must not be modified
+     */
+    public synchronized BitSet matches(@NonNull String selector) {
+        BitSet out = matches.get(selector);
+
+        if (out == null) {
+            pending.add(selector);
+            evaluate();
+            out = matches.get(selector);
+        }
+
+        return out;
+    }
+
+    private void evaluate() {
+        Compiled compiled = new Compiled();
+
+        for (String selector : pending) {
+            BitSet out = new BitSet(repositories.size());
+            matches.put(selector, out);
+            compiled.add(RepositorySelector.parse(selector), out);
+        }
+
+        pending.clear();
+
+        for (int id = 0; id < repositories.size(); id++) {
+            compiled.match(repositories.get(id), id);
+        }
+    }
+
+    /**
+     * A batch of selectors, each paired with the set which receives the IDs of the repositories it matches.
+     */
+    private static final class Compiled {
+
+        private final Map<String, List<BitSet>> names = new HashMap<>();
+
+        private final Node prefixes = new Node();
+
+        private final Map<String, List<BitSet>> topics = new HashMap<>();
+
+        private final List<BitSet> archived = new ArrayList<>();
+
+        private final List<BitSet> notArchived = new ArrayList<>();
+
+        private final Map<RepositoryVisibility, List<BitSet>> visibilities = new EnumMap<>(RepositoryVisibility.class);
+
+        private final List<Pattern> patterns = new ArrayList<>();
+
+        private final List<BitSet> patternMatches = new ArrayList<>();
+
+        void add(RepositorySelector selector, BitSet out) {
+            switch (selector.getKind()) {
+                case NAME:
+                    names.computeIfAbsent(selector.getValue(), key -> new ArrayList<>()).add(out);
+                    break;
+                case PREFIX:
+                    prefixes.child(selector.getValue()).selectors.add(out);
+                    break;
+                case PATTERN:
+                    patterns.add(selector.getPattern());
+                    patternMatches.add(out);
+                    break;
+                case TOPIC:
+                    topics.computeIfAbsent(selector.getValue(), key -> new ArrayList<>()).add(out);
+                    break;
+                case ARCHIVED:
+                    (Boolean.parseBoolean(selector.getValue()) ? archived : notArchived).add(out);
+                    break;
+                case VISIBILITY:
+                    visibilities.computeIfAbsent(selector.getVisibility(), key -> new ArrayList<>()).add(out);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown kind of selector " + selector.getKind());
+            }
+        }
+
+        void match(RepositoryInfo repository, int id) {
+            String name = repository.getName();
+
+            mark(names.get(name), id);
+
+            Node node = prefixes;
+            mark(node.selectors, id);
+
+            for (int i = 0; i < name.length() && node.children != null; i++) {
+                node = node.children.get(name.charAt(i));
+
+                if (node == null) {
+                    break;
+                }
+
+                mark(node.selectors, id);
+            }
+
+            if (!topics.isEmpty()) {
+                repository.getTopics().forEach(topic -> mark(topics.get(topic), id));
+            }
+
+            mark(repository.isArchived() ? archived : notArchived, id);
+
+            if (repository.getVisibility() != null) {
+                mark(visibilities.get(repository.getVisibility()), id);
+            }
+
+            for (int i = 0; i < patterns.size(); i++) {
+                if (patterns.get(i).matcher(name).matches()) {
+                    patternMatches.get(i).set(id);
+                }
+            }
+        }
+
+        private static void mark(List<BitSet> selectors, int id) {
+            if (selectors != null) {
+                for (BitSet selector : selectors) {
+                    selector.set(id);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Node of a trie of prefixes, holding the selectors of the prefix which ends at the node.
+     */
+    private static final class Node {
+
+        private Map<Character, Node> children;
+
+        private final List<BitSet> selectors = new ArrayList<>();
+
+        Node child(String prefix) {
+            Node node = this;
+
+            for (int i = 0; i < prefix.length(); i++) {
+                if (node.children == null) {
+                    node.children = new HashMap<>();
+                }
+
+                node = node.children.computeIfAbsent(prefix.charAt(i), key -> new Node());
+            }
+
+            return node;
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.planning;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Changes needed to bring a single team to its configured state.
+ */
+@Value
+public class TeamPlan {
+
+    @NonNull
+    private final String organization;
+
+    @NonNull
+    private final String team;
+
+    @NonNull
+    private final List<MembershipChange> membership;
+
+    @NonNull
+    private final List<RepositoryChange> repositories;
+
+    /**
+     * Number of configured users who already have the expected role
+     */
+    private final int unchangedMembers;
+
+    /**
+     * Number of configured repositories the team already has the expected permission over
+     */
+    private final int unchangedRepositories;
+
+    public boolean isEmpty() {
+        return membership.isEmpty() && repositories.isEmpty();
+    }
+
+    public int getChangeCount() {
+        return membership.size() + repositories.size();
+    }
+
+}
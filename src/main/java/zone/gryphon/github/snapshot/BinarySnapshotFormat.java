@@ -0,0 +1,359 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.snapshot;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.cache.TeamState;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.RepositoryVisibility;
+import zone.gryphon.github.model.TeamRole;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static zone.gryphon.github.utilities.Varints.readVarint;
+import static zone.gryphon.github.utilities.Varints.readVarlong;
+import static zone.gryphon.github.utilities.Varints.writeVarint;
+import static zone.gryphon.github.utilities.Varints.writeVarlong;
+
+/**
+ * Compact binary encoding of {@link StateSnapshot}s.
+ * <p>
+ * The layout is:
+ * <pre>
+ * magic         "GPAS"
+ * version       u8
+ * strings       varint count, then (varint length, UTF-8 bytes) per string
+ * organizations varint count, then per organization:
+ *   name          string index
+ *   repositories  varint count, then string index per repository
+ *   flags         u8; bit 0 set if the attributes of repositories were captured (version 2 and later)
+ *   attributes    (if captured) per repository, in the same order:
+ *     id            varint
+ *     flags         u8; bit 0 set if the repository is archived
+ *     visibility    u8; {@link RepositoryVisibility} ordinal + 1, or 0 if not known
+ *     topics        varint count, then string index per topic
+ *   teams         varint count, then per team:
+ *     name, slug    string indexes
+ *     flags         u8; bit 0 set if members were captured, bit 1 set if repositories were captured
+ *     members       (if captured) varint count, then (string index, u8 {@link TeamRole} ordinal) per member
+ *     repositories  (if captured) varint count, then (string index, u8 {@link RepositoryPermission} ordinal) per repository
+ * </pre>
+ * Every string is stored once, and read back as a single shared instance. Files are memory mapped when read.
+ * Enums are stored by ordinal, so the existing values of {@link TeamRole}, {@link RepositoryPermission} and
+ * {@link RepositoryVisibility} must never be removed or reordered; new values may only be appended.
+ * Files written in version 1, which did not capture the attributes of repositories, can still be read.
+ */
+@UtilityClass
+public final class BinarySnapshotFormat {
+
+    private static final byte[] MAGIC = "GPAS".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 2;
+
+    private static final int DETAILS_CAPTURED = 1;
+
+    private static final int ARCHIVED = 1;
+
+    private static final int MEMBERS_CAPTURED = 1;
+
+    private static final int REPOSITORIES_CAPTURED = 1 << 1;
+
+    private static final TeamRole[] ROLES = TeamRole.values();
+
+    private static final RepositoryPermission[] PERMISSIONS = RepositoryPermission.values();
+
+    private static final RepositoryVisibility[] VISIBILITIES = RepositoryVisibility.values();
+
+    /**
+     * @param in Stream positioned at the start of a file
+     * @return True if the stream starts with the binary snapshot header
+     * @throws IOException If the stream could not be read
+     */
+    public static boolean matches(@NonNull InputStream in) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        int read = 0;
+
+        while (read < header.length) {
+            int count = in.read(header, read, header.length - read);
+
+            if (count < 0) {
+                return false;
+            }
+
+            read += count;
+        }
+
+        return Arrays.equals(header, MAGIC);
+    }
+
+    public static void write(@NonNull StateSnapshot snapshot, @NonNull File file) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+
+        // first pass: intern every string, so the table can be written up front
+        for (Map.Entry<String, OrganizationSnapshot> organization : snapshot.getOrganizations().entrySet()) {
+            intern(strings, organization.getKey());
+            organization.getValue().getRepositories().forEach(repository -> intern(strings, repository));
+
+            if (organization.getValue().getRepositoryDetails() != null) {
+                organization.getValue().getRepositoryDetails().forEach(repository -> repository.getTopics().forEach(topic -> intern(strings, topic)));
+            }
+
+            for (TeamState team : organization.getValue().getTeams()) {
+                intern(strings, team.getName());
+                intern(strings, team.getSlug());
+
+                if (team.getMembers() != null) {
+                    team.getMembers().keySet().forEach(member -> intern(strings, member));
+                }
+
+                if (team.getRepositories() != null) {
+                    team.getRepositories().keySet().forEach(repository -> intern(strings, repository));
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+
+            writeVarint(out, strings.size());
+
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+            }
+
+            writeVarint(out, snapshot.getOrganizations().size());
+
+            for (Map.Entry<String, OrganizationSnapshot> organization : snapshot.getOrganizations().entrySet()) {
+                writeVarint(out, strings.get(organization.getKey()));
+
+                Set<String> repositories = organization.getValue().getRepositories();
+                writeVarint(out, repositories.size());
+
+                for (String repository : repositories) {
+                    writeVarint(out, strings.get(repository));
+                }
+
+                List<RepositoryInfo> details = organization.getValue().getRepositoryDetails();
+                out.writeByte(details == null ? 0 : DETAILS_CAPTURED);
+
+                if (details != null) {
+                    Map<String, RepositoryInfo> byName = new HashMap<>(capacity(details.size()));
+                    details.forEach(repository -> byName.put(repository.getName(), repository));
+
+                    // attributes are written in the same order as the names, so the names don't need to be repeated
+                    for (String repository : repositories) {
+                        writeDetails(out, strings, byName.getOrDefault(repository, new RepositoryInfo(repository, 0, false, null, Collections.emptySet())));
+                    }
+                }
+
+                List<TeamState> teams = organization.getValue().getTeams();
+                writeVarint(out, teams.size());
+
+                for (TeamState team : teams) {
+                    writeTeam(out, strings, team);
+                }
+            }
+        }
+    }
+
+    public static StateSnapshot read(@NonNull File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer, file);
+        }
+    }
+
+    private static StateSnapshot read(ByteBuffer buffer, File file) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException(String.format("File \"%s\" is not a binary state snapshot", file.getAbsolutePath()));
+        }
+
+        int version = buffer.get() & 0xFF;
+
+        if (version < 1 || version > VERSION) {
+            throw new IOException(String.format("State snapshot \"%s\" has unsupported version %d, expected at most %d", file.getAbsolutePath(), version, VERSION));
+        }
+
+        String[] strings = new String[readVarint(buffer)];
+
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint(buffer)];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int organizationCount = readVarint(buffer);
+        Map<String, OrganizationSnapshot> organizations = new LinkedHashMap<>(capacity(organizationCount));
+
+        for (int i = 0; i < organizationCount; i++) {
+            String name = strings[readVarint(buffer)];
+
+            int repositoryCount = readVarint(buffer);
+            Set<String> repositories = new LinkedHashSet<>(capacity(repositoryCount));
+
+            for (int j = 0; j < repositoryCount; j++) {
+                repositories.add(strings[readVarint(buffer)]);
+            }
+
+            List<RepositoryInfo> details = null;
+
+            if (version >= 2 && (buffer.get() & DETAILS_CAPTURED) != 0) {
+                details = new ArrayList<>(repositoryCount);
+
+                for (String repository : repositories) {
+                    details.add(readDetails(buffer, strings, repository));
+                }
+            }
+
+            int teamCount = readVarint(buffer);
+            List<TeamState> teams = new ArrayList<>(teamCount);
+
+            for (int j = 0; j < teamCount; j++) {
+                teams.add(readTeam(buffer, strings));
+            }
+
+            OrganizationSnapshot organization = new OrganizationSnapshot();
+            organization.setRepositories(Collections.unmodifiableSet(repositories));
+            organization.setRepositoryDetails(details == null ? null : Collections.unmodifiableList(details));
+            organization.setTeams(Collections.unmodifiableList(teams));
+            organizations.put(name, organization);
+        }
+
+        StateSnapshot out = new StateSnapshot();
+        out.setOrganizations(organizations);
+        return out;
+    }
+
+    private static void writeDetails(DataOutputStream out, Map<String, Integer> strings, RepositoryInfo repository) throws IOException {
+        writeVarlong(out, repository.getId());
+        out.writeByte(repository.isArchived() ? ARCHIVED : 0);
+        out.writeByte(repository.getVisibility() == null ? 0 : repository.getVisibility().ordinal() + 1);
+        writeVarint(out, repository.getTopics().size());
+
+        for (String topic : repository.getTopics()) {
+            writeVarint(out, strings.get(topic));
+        }
+    }
+
+    private static RepositoryInfo readDetails(ByteBuffer buffer, String[] strings, String name) {
+        long id = readVarlong(buffer);
+        boolean archived = (buffer.get() & ARCHIVED) != 0;
+        int visibility = buffer.get();
+        int topicCount = readVarint(buffer);
+
+        Set<String> topics = topicCount == 0 ? Collections.emptySet() : new HashSet<>(capacity(topicCount));
+
+        for (int i = 0; i < topicCount; i++) {
+            topics.add(strings[readVarint(buffer)]);
+        }
+
+        return new RepositoryInfo(name, id, archived, visibility == 0 ? null : VISIBILITIES[visibility - 1], topics);
+    }
+
+    private static void writeTeam(DataOutputStream out, Map<String, Integer> strings, TeamState team) throws IOException {
+        writeVarint(out, strings.get(team.getName()));
+        writeVarint(out, strings.get(team.getSlug()));
+
+        int flags = 0;
+        flags |= team.getMembers() == null ? 0 : MEMBERS_CAPTURED;
+        flags |= team.getRepositories() == null ? 0 : REPOSITORIES_CAPTURED;
+        out.writeByte(flags);
+
+        if (team.getMembers() != null) {
+            writeVarint(out, team.getMembers().size());
+
+            for (Map.Entry<String, TeamRole> member : team.getMembers().entrySet()) {
+                writeVarint(out, strings.get(member.getKey()));
+                out.writeByte(member.getValue().ordinal());
+            }
+        }
+
+        if (team.getRepositories() != null) {
+            writeVarint(out, team.getRepositories().size());
+
+            for (Map.Entry<String, RepositoryPermission> repository : team.getRepositories().entrySet()) {
+                writeVarint(out, strings.get(repository.getKey()));
+                out.writeByte(repository.getValue().ordinal());
+            }
+        }
+    }
+
+    private static TeamState readTeam(ByteBuffer buffer, String[] strings) {
+        String name = strings[readVarint(buffer)];
+        String slug = strings[readVarint(buffer)];
+        int flags = buffer.get();
+
+        Map<String, TeamRole> members = null;
+
+        if ((flags & MEMBERS_CAPTURED) != 0) {
+            int count = readVarint(buffer);
+            members = new HashMap<>(capacity(count));
+
+            for (int i = 0; i < count; i++) {
+                members.put(strings[readVarint(buffer)], ROLES[buffer.get()]);
+            }
+        }
+
+        Map<String, RepositoryPermission> repositories = null;
+
+        if ((flags & REPOSITORIES_CAPTURED) != 0) {
+            int count = readVarint(buffer);
+            repositories = new HashMap<>(capacity(count));
+
+            for (int i = 0; i < count; i++) {
+                repositories.put(strings[readVarint(buffer)], PERMISSIONS[buffer.get()]);
+            }
+        }
+
+        return new TeamState(name, slug, members, repositories);
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        strings.putIfAbsent(string, strings.size());
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+}
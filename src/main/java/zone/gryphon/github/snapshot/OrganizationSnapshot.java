@@ -0,0 +1,38 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.snapshot;
+
+import lombok.Data;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.cache.TeamState;
+
+import java.util.List;
+import java.util.Set;
+
+@Data
+public class OrganizationSnapshot {
+
+    private Set<String> repositories;
+
+    /**
+     * Attributes of every repository, in the same order as {@link #repositories}; null in snapshots taken before the
+     * attributes of repositories were captured
+     */
+    private List<RepositoryInfo> repositoryDetails;
+
+    private List<TeamState> teams;
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.snapshot;
+
+import lombok.NonNull;
+import zone.gryphon.github.cache.RepositoryInfo;
+import zone.gryphon.github.cache.StateLoader;
+import zone.gryphon.github.cache.TeamState;
+import zone.gryphon.github.model.RepositoryPermission;
+import zone.gryphon.github.model.TeamRole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * {@link StateLoader} which serves a previously captured {@link OrganizationSnapshot}, without any network access.
+ * Since there is no connection to Github, the state it serves can not be modified.
+ */
+public class SnapshotStateLoader implements StateLoader {
+
+    private final String organization;
+
+    private final OrganizationSnapshot snapshot;
+
+    /**
+     * Map of repository name -&gt; repository
+     */
+    private final Map<String, RepositoryInfo> repositories;
+
+    public SnapshotStateLoader(@NonNull String organization, @NonNull OrganizationSnapshot snapshot) {
+        this.organization = organization;
+        this.snapshot = snapshot;
+        this.repositories = new LinkedHashMap<>((int) (snapshot.getRepositories().size() / 0.75f) + 1);
+
+        if (snapshot.getRepositoryDetails() != null) {
+            snapshot.getRepositoryDetails().forEach(repository -> repositories.put(repository.getName(), repository));
+        } else {
+            snapshot.getRepositories().forEach(name -> repositories.put(name, repositoryOf(name)));
+        }
+    }
+
+    @Override
+    public void listRepositories(@NonNull Consumer<List<RepositoryInfo>> consumer) {
+        consumer.accept(new ArrayList<>(repositories.values()));
+    }
+
+    @Override
+    public Optional<RepositoryInfo> findRepository(@NonNull String name) {
+        return Optional.ofNullable(repositories.get(name));
+    }
+
+    @Override
+    public List<TeamState> loadTeams() {
+        return snapshot.getTeams();
+    }
+
+    @Override
+    public Map<String, TeamRole> loadMembers(@NonNull TeamState team) {
+        throw notCaptured(team, "members");
+    }
+
+    @Override
+    public Map<String, RepositoryPermission> loadRepositories(@NonNull TeamState team) {
+        throw notCaptured(team, "repositories");
+    }
+
+    @Override
+    public long getTeamId(@NonNull TeamState team) {
+        throw new UnsupportedOperationException("Snapshots do not capture the IDs of teams");
+    }
+
+    @Override
+    public void setRole(@NonNull TeamState team, @NonNull String login, @NonNull TeamRole role) {
+        throw new UnsupportedOperationException("Teams loaded from a snapshot can not be modified");
+    }
+
+    @Override
+    public void setPermission(@NonNull TeamState team, @NonNull String repository, @NonNull RepositoryPermission permission) {
+        throw new UnsupportedOperationException("Teams loaded from a snapshot can not be modified");
+    }
+
+    // older snapshots only capture the names of repositories
+    private static RepositoryInfo repositoryOf(String name) {
+        return new RepositoryInfo(name, 0, false, null, Collections.emptySet());
+    }
+
+    private IllegalStateException notCaptured(TeamState team, String what) {
+        return new IllegalStateException(String.format("The %s of team \"%s\" in organization \"%s\" were not captured in the snapshot", what, team.getName(), organization));
+    }
+}
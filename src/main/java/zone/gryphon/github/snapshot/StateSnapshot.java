@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NonNull;
+import zone.gryphon.github.cache.CachingOrganization;
+import zone.gryphon.github.cache.CachingTeam;
+import zone.gryphon.github.cache.TeamState;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Captured state of a set of organizations, which can be planned against without access to Github.
+ */
+@Data
+public class StateSnapshot {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Map of organization name -&gt; state of the organization
+     */
+    private Map<String, OrganizationSnapshot> organizations;
+
+    /**
+     * Capture everything which has been loaded for a single organization.
+     *
+     * @param organization The organization to capture
+     * @return The snapshot of the organization
+     */
+    public static OrganizationSnapshot capture(@NonNull CachingOrganization organization) {
+        List<TeamState> teams = new ArrayList<>();
+
+        for (CachingTeam team : organization.getTeams()) {
+            teams.add(team.toState());
+        }
+
+        OrganizationSnapshot snapshot = new OrganizationSnapshot();
+        snapshot.setRepositories(organization.getRepositoryNames());
+        snapshot.setRepositoryDetails(new ArrayList<>(organization.getRepositories().values()));
+        snapshot.setTeams(teams);
+        return snapshot;
+    }
+
+    /**
+     * Read a snapshot, detecting whether it was written in the binary or JSON format.
+     *
+     * @param file The file to read
+     * @return The snapshot
+     * @throws IOException If the file could not be read
+     */
+    public static StateSnapshot read(@NonNull File file) throws IOException {
+        boolean binary;
+
+        try (InputStream in = new FileInputStream(file)) {
+            binary = BinarySnapshotFormat.matches(in);
+        }
+
+        return binary ? BinarySnapshotFormat.read(file) : MAPPER.readValue(file, StateSnapshot.class);
+    }
+
+    /**
+     * Write the snapshot as JSON if the file name ends in {@code .json}, and in the binary format otherwise.
+     *
+     * @param file The file to write
+     * @throws IOException If the file could not be written
+     */
+    public void write(@NonNull File file) throws IOException {
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".json")) {
+            MAPPER.writeValue(file, this);
+        } else {
+            BinarySnapshotFormat.write(this, file);
+        }
+    }
+
+}
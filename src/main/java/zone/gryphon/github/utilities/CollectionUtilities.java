@@ -32,16 +32,4 @@ public final class CollectionUtilities {
         return input == null ? Collections.emptyMap() : input;
     }
 
-    public static <T> Set<T> firstNonEmpty(Set... collection) {
-
-        //noinspection unchecked
-        for (Set<T> candidate : collection) {
-            if (candidate != null && !candidate.isEmpty()) {
-                return candidate;
-            }
-        }
-
-        return Collections.emptySet();
-    }
-
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.utilities;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of workers.
+ * <p>
+ * At most {@code parallelism} tasks run at the same time, regardless of whether the tasks are backed by platform
+ * threads or (on JDKs which support them) virtual threads. Submitters waiting for a worker are served in the order
+ * they started waiting, so several callers sharing a pool take turns instead of one of them filling it.
+ */
+@Slf4j
+public class WorkerPool implements AutoCloseable {
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+    public WorkerPool(@NonNull String name, int parallelism, boolean virtual) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, got " + parallelism);
+        }
+
+        this.permits = new Semaphore(parallelism, true);
+        this.executor = virtual ? virtualExecutor(name, parallelism) : platformExecutor(name, parallelism);
+    }
+
+    /**
+     * Submit a task to the pool, blocking until a worker is available to run it.
+     *
+     * @param task The task to run
+     * @return Future which completes when the task does
+     */
+    public CompletableFuture<Void> submit(@NonNull Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a worker", e);
+        }
+
+        CompletableFuture<Void> future;
+
+        try {
+            future = CompletableFuture.runAsync(task, executor);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        synchronized (pending) {
+            pending.add(future);
+        }
+
+        future.whenComplete((ignored, error) -> {
+            permits.release();
+
+            // only failures are left to report, so a pool which is never awaited doesn't keep every task it ran
+            if (error == null) {
+                synchronized (pending) {
+                    pending.remove(future);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Wait for every task submitted so far to finish.
+     *
+     * @return The failures of the tasks which did not complete successfully
+     */
+    public List<Throwable> await() {
+        List<CompletableFuture<Void>> futures;
+
+        synchronized (pending) {
+            futures = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        return await(futures);
+    }
+
+    /**
+     * Wait for some of the tasks submitted to a pool to finish.
+     *
+     * @param futures The futures returned when submitting the tasks
+     * @return The failures of the tasks which did not complete successfully
+     */
+    public static List<Throwable> await(@NonNull Collection<CompletableFuture<Void>> futures) {
+        List<Throwable> failures = new ArrayList<>();
+
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            } catch (RuntimeException e) {
+                failures.add(e.getCause() == null ? e : e.getCause());
+            }
+        }
+
+        return failures;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Workers did not terminate within one minute, abandoning them");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService platformExecutor(String name, int parallelism) {
+        AtomicInteger counter = new AtomicInteger();
+
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, String.format("%s-%d", name, counter.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return Executors.newFixedThreadPool(parallelism, factory);
+    }
+
+    private static ExecutorService virtualExecutor(String name, int parallelism) {
+        try {
+            // looked up reflectively so that the application can still be built and run on JDKs without virtual threads
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not supported by this JVM ({}), falling back to platform threads", System.getProperty("java.version"));
+            return platformExecutor(name, parallelism);
+        }
+    }
+}
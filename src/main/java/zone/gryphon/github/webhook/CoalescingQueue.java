@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.webhook;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import zone.gryphon.github.planning.ReconciliationTarget;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects reconciliation targets, and hands them to a handler in batches.
+ * <p>
+ * A batch is started by the first target submitted while the queue is empty, and is handed off once the window has
+ * passed, so a burst of events becomes a single reconciliation. Targets for the same team within a batch are merged.
+ * Batches are handled one at a time on a single background thread; targets submitted while a batch is being
+ * handled go into the next batch.
+ */
+@Slf4j
+public class CoalescingQueue implements AutoCloseable {
+
+    private final long windowNanos;
+
+    private final Consumer<List<ReconciliationTarget>> handler;
+
+    /**
+     * Map of (organization, team) -&gt; target
+     */
+    private final Map<List<String>, ReconciliationTarget> pending = new LinkedHashMap<>();
+
+    private final Thread thread;
+
+    private long deadline;
+
+    /**
+     * @param window  How long to wait for more targets after the first target of a batch is submitted
+     * @param handler Callback invoked with each batch
+     */
+    public CoalescingQueue(@NonNull Duration window, @NonNull Consumer<List<ReconciliationTarget>> handler) {
+        this.windowNanos = window.toNanos();
+        this.handler = handler;
+        this.thread = new Thread(this::process, "webhook-reconciler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public synchronized void submit(@NonNull Collection<ReconciliationTarget> targets) {
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        if (pending.isEmpty()) {
+            deadline = System.nanoTime() + windowNanos;
+            notifyAll();
+        }
+
+        for (ReconciliationTarget target : targets) {
+            pending.merge(key(target), target, ReconciliationTarget::merge);
+        }
+    }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+
+    private void process() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<ReconciliationTarget> batch = take();
+                log.info("Reconciling {} target{} from webhook events", batch.size(), batch.size() == 1 ? "" : "s");
+
+                try {
+                    handler.accept(batch);
+                } catch (RuntimeException e) {
+                    log.error("Failed to reconcile targets from webhook events", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized List<ReconciliationTarget> take() throws InterruptedException {
+        while (pending.isEmpty()) {
+            wait();
+        }
+
+        long remaining;
+
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        List<ReconciliationTarget> out = new ArrayList<>(pending.values());
+        pending.clear();
+        return out;
+    }
+
+    private static List<String> key(ReconciliationTarget target) {
+        return Arrays.asList(target.getOrganization(), target.getTeam());
+    }
+
+}
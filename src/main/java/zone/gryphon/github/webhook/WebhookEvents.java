@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import zone.gryphon.github.planning.ReconciliationTarget;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps Github webhook events to the teams they may have caused to drift from their configuration.
+ */
+@UtilityClass
+public final class WebhookEvents {
+
+    /**
+     * @param event   The type of the event, from the {@code X-GitHub-Event} header
+     * @param payload The payload of the event
+     * @return The targets to reconcile; empty if the event cannot affect any team
+     */
+    public static List<ReconciliationTarget> targets(@NonNull String event, @NonNull JsonNode payload) {
+        String organization = payload.path("organization").path("login").asText(null);
+
+        if (organization == null) {
+            organization = payload.path("repository").path("owner").path("login").asText(null);
+        }
+
+        if (organization == null) {
+            return Collections.emptyList();
+        }
+
+        String team = payload.path("team").path("name").asText(null);
+        String action = payload.path("action").asText("");
+
+        switch (event) {
+            case "membership":
+                // membership events are only sent for teams, but check anyway in case other scopes are ever added
+                if (team == null || !"team".equals(payload.path("scope").asText())) {
+                    return Collections.emptyList();
+                }
+
+                return target(organization, team, true, false);
+
+            case "team":
+                if (team == null) {
+                    return Collections.emptyList();
+                }
+
+                if (action.equals("added_to_repository") || action.equals("removed_from_repository")) {
+                    return target(organization, team, false, true);
+                }
+
+                return target(organization, team, true, true);
+
+            case "team_add":
+                return team == null ? Collections.emptyList() : target(organization, team, false, true);
+
+            case "repository":
+                // repositories which are created, renamed or transferred may now be covered by every team's defaults
+                return target(organization, null, false, true);
+
+            case "organization":
+                if (action.equals("member_added") || action.equals("member_removed")) {
+                    return target(organization, null, true, false);
+                }
+
+                return Collections.emptyList();
+
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private static List<ReconciliationTarget> target(String organization, String team, boolean members, boolean repositories) {
+        return Collections.singletonList(new ReconciliationTarget(organization, team, members, repositories));
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019-2019 Gryphon Zone
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package zone.gryphon.github.webhook;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import zone.gryphon.github.planning.ReconciliationTarget;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Embedded HTTP endpoint receiving Github webhook deliveries.
+ * <p>
+ * Every delivery must be signed with the shared secret; unsigned or incorrectly signed deliveries are rejected.
+ * Events which may have caused a team to drift from its configuration are submitted to a {@link CoalescingQueue}.
+ */
+@Slf4j
+public class WebhookListener implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int MAX_PAYLOAD_BYTES = 25 * 1024 * 1024;
+
+    private final byte[] secret;
+
+    private final CoalescingQueue queue;
+
+    private final HttpServer server;
+
+    /**
+     * @param port   Port to listen on
+     * @param secret Secret the webhook was configured with
+     * @param queue  Queue to submit targets to
+     * @throws IOException If the server could not be started
+     */
+    public WebhookListener(int port, @NonNull String secret, @NonNull CoalescingQueue queue) throws IOException {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.queue = queue;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+        log.info("Listening for webhook deliveries on port {}", server.getAddress().getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = read(exchange.getRequestBody());
+            String event = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
+            String delivery = exchange.getRequestHeaders().getFirst("X-GitHub-Delivery");
+
+            if (body == null) {
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+
+            if (!verify(exchange, body)) {
+                log.warn("Rejecting webhook delivery {} with a missing or invalid signature", delivery);
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+
+            if (event == null) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            JsonNode payload;
+
+            try {
+                payload = MAPPER.readTree(body);
+            } catch (IOException e) {
+                log.warn("Rejecting webhook delivery {} with a malformed payload", delivery, e);
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            List<ReconciliationTarget> targets = WebhookEvents.targets(event, payload);
+            log.debug("Webhook delivery {} of \"{}\" event affects {}", delivery, event, targets);
+
+            queue.submit(targets);
+            exchange.sendResponseHeaders(targets.isEmpty() ? 204 : 202, -1);
+        } catch (RuntimeException e) {
+            log.error("Failed to handle webhook delivery", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Check the {@code X-Hub-Signature-256} header if present, falling back to the older {@code X-Hub-Signature}.
+     */
+    private boolean verify(HttpExchange exchange, byte[] body) {
+        String sha256 = exchange.getRequestHeaders().getFirst("X-Hub-Signature-256");
+
+        if (sha256 != null) {
+            return matches(sha256, "sha256=", "HmacSHA256", body);
+        }
+
+        String sha1 = exchange.getRequestHeaders().getFirst("X-Hub-Signature");
+        return sha1 != null && matches(sha1, "sha1=", "HmacSHA1", body);
+    }
+
+    private boolean matches(String signature, String prefix, String algorithm, byte[] body) {
+        if (!signature.startsWith(prefix)) {
+            return false;
+        }
+
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(secret, algorithm));
+            byte[] expected = hex(mac.doFinal(body)).getBytes(StandardCharsets.US_ASCII);
+            byte[] actual = signature.substring(prefix.length()).getBytes(StandardCharsets.US_ASCII);
+
+            // constant time comparison, so the signature can't be guessed a byte at a time
+            return MessageDigest.isEqual(expected, actual);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to compute " + algorithm + " signature", e);
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+
+            if (out.size() > MAX_PAYLOAD_BYTES) {
+                return null;
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder out = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            out.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return out.toString();
+    }
+
+}